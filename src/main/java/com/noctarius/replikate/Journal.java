@@ -25,10 +25,12 @@ import com.noctarius.replikate.spi.JournalEntryWriter;
 import com.noctarius.replikate.spi.JournalRecordIdGenerator;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface Journal<V> {
 
-    int JOURNAL_VERSION = 1;
+    int JOURNAL_VERSION = 3;
 
     String getName();
 
@@ -38,12 +40,69 @@ public interface Journal<V> {
     void appendEntry(V entry, byte type, JournalListener<V> listener)
             throws JournalException;
 
+    /**
+     * Appends the given entry without waiting for it to be persisted. The returned future is completed with the
+     * committed record once it is durable according to the configured sync mode, or exceptionally if persisting failed.
+     *
+     * @param entry the entry to append
+     * @param type  the type of the entry
+     * @return a future completed with the committed record
+     */
+    CompletableFuture<JournalRecord<V>> appendEntryAsync(V entry, byte type);
+
+    CompletableFuture<JournalRecord<V>> appendEntryAsync(V entry, byte type, JournalListener<V> listener);
+
     JournalBatch<V> startBatchProcess();
 
     JournalBatch<V> startBatchProcess(JournalListener<V> listener);
 
     long getLastRecordId();
 
+    /**
+     * Reads a single record back from the journal.
+     *
+     * @param recordId the recordId of the record
+     * @return the record or null if no such record exists (anymore), records covered by a checkpoint might already be
+     * removed
+     * @throws JournalException if reading the journal failed
+     */
+    JournalRecord<V> readRecord(long recordId)
+            throws JournalException;
+
+    /**
+     * Reads all existing records between the given recordIds (both inclusive) back from the journal, in recordId order.
+     * Records are fully materialized, so the range should be chosen accordingly.
+     *
+     * @param fromRecordId the first recordId of the range
+     * @param toRecordId   the last recordId of the range
+     * @return the existing records of the range, records covered by a checkpoint might already be removed
+     * @throws JournalException if reading the journal failed
+     */
+    List<JournalRecord<V>> readRange(long fromRecordId, long toRecordId)
+            throws JournalException;
+
+    /**
+     * Opens a cursor following the journal from the given recordId on, including records committed after opening it.
+     * Every consumer reads at its own pace without slowing down appending threads.
+     *
+     * @param recordId the recordId to start reading at, older records are skipped
+     * @return the opened cursor, to be closed by the consumer
+     * @throws JournalException if the journal is already closed or the cursor could not be opened
+     */
+    JournalCursor<V> openCursor(long recordId)
+            throws JournalException;
+
+    /**
+     * Marks all records up to and including the given recordId as applied. The checkpoint is persisted, journal files
+     * only containing covered records are removed (or recycled) and a later replay starts right after the checkpoint.
+     *
+     * @param recordId the highest applied recordId
+     * @throws IllegalArgumentException if the recordId was not generated yet
+     * @throws JournalException         if the checkpoint could not be persisted
+     */
+    void checkpoint(long recordId)
+            throws JournalException;
+
     long nextLogNumber();
 
     void close()
@@ -21,6 +21,9 @@ package com.noctarius.replikate;
 import com.noctarius.replikate.exceptions.JournalException;
 import com.noctarius.replikate.spi.JournalEntry;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public interface JournalBatch<V> {
 
     void appendEntry(V entry, byte type)
@@ -29,4 +32,12 @@ public interface JournalBatch<V> {
     void commit()
             throws JournalException;
 
+    /**
+     * Commits the batch without waiting for it to be persisted. The returned future is completed with all records of
+     * the batch once they are durable, or exceptionally if the batch was rolled back.
+     *
+     * @return a future completed with the committed records
+     */
+    CompletableFuture<List<JournalRecord<V>>> commitAsync();
+
 }
@@ -0,0 +1,66 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate;
+
+import com.noctarius.replikate.exceptions.JournalException;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows a journal record by record, including records committed after the cursor was opened. Records are read
+ * straight from the journal files, independently of the {@link JournalListener} notifications, so a slow consumer only
+ * falls behind itself. Records covered by a checkpoint might be removed before a slow consumer reached them, those are
+ * skipped. A cursor is meant to be used by a single consumer thread.
+ *
+ * @param <V> the type of the journal's entries
+ */
+public interface JournalCursor<V>
+        extends Closeable {
+
+    /**
+     * Returns the next committed record without waiting.
+     *
+     * @return the next record or null if no further record is committed yet
+     * @throws JournalException if the journal is closed or reading the journal failed
+     */
+    JournalRecord<V> poll()
+            throws JournalException;
+
+    /**
+     * Returns the next committed record, waiting up to the given timeout for it to be committed.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the unit of the timeout
+     * @return the next record or null if no further record was committed before the timeout elapsed
+     * @throws JournalException     if the journal is closed or reading the journal failed
+     * @throws InterruptedException if the consumer thread was interrupted while waiting
+     */
+    JournalRecord<V> poll(long timeout, TimeUnit unit)
+            throws JournalException, InterruptedException;
+
+    /**
+     * @return the lowest recordId the next record can have
+     */
+    long getNextRecordId();
+
+    @Override
+    void close();
+
+}
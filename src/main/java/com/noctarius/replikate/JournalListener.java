@@ -38,10 +38,11 @@ public interface JournalListener<V> {
      * initialization of journal when replay is finished</li>
      * <li>{@link ReplayNotificationResult#Terminate} will silently finish the record reading and will only announce the
      * already read entries</li>
-     * <li>Finally {@link ReplayNotificationResult#Except} will throw a {@link JournalException} and none of the already
-     * read entries will be announced (same can be achieved by throwing an {@link RuntimeException} inside the callback)
-     * </li>
+     * <li>Finally {@link ReplayNotificationResult#Except} will throw a {@link JournalException} and no further entries will
+     * be announced (same can be achieved by throwing an {@link RuntimeException} inside the callback)</li>
      * </ul>
+     * <p>Records are replayed in a streaming fashion, therefore entries announced before the suspicious record was found
+     * stay announced.</p>
      *
      * @param journal       The journal that is read
      * @param lastRecord    The previously read journal record
@@ -0,0 +1,138 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.codec;
+
+import com.noctarius.replikate.spi.JournalCompressionCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * {@link JournalCompressionCodec} based on {@link Deflater}. The compressed form is the uncompressed length followed by
+ * a raw deflate stream. Deflaters and inflaters hold native memory and are therefore kept per thread.
+ */
+public class DeflateCompressionCodec
+        implements JournalCompressionCodec {
+
+    public static final byte CODEC_ID = 1;
+
+    private final ThreadLocal<Deflater> deflater;
+    private final ThreadLocal<Inflater> inflater = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    public DeflateCompressionCodec() {
+        this(Deflater.BEST_SPEED);
+    }
+
+    public DeflateCompressionCodec(final int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("level must be between -1 and 9");
+        }
+        this.deflater = new ThreadLocal<Deflater>() {
+            @Override
+            protected Deflater initialValue() {
+                return new Deflater(level, true);
+            }
+        };
+    }
+
+    @Override
+    public byte getCodecId() {
+        return CODEC_ID;
+    }
+
+    @Override
+    public byte[] compress(byte[] data)
+            throws IOException {
+
+        Deflater deflater = this.deflater.get();
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            byte[] compressed = new byte[4 + data.length];
+            putInt(compressed, data.length);
+            int length = 4;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            return Arrays.copyOf(compressed, length);
+
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    @Override
+    public byte[] decompress(ByteBuffer data)
+            throws IOException {
+
+        if (data.remaining() < 4) {
+            throw new IOException("Corrupted deflate compressed entry");
+        }
+        int length = data.getInt();
+        if (length < 0) {
+            throw new IOException("Corrupted deflate compressed entry");
+        }
+
+        byte[] input = new byte[data.remaining()];
+        data.get(input);
+
+        Inflater inflater = this.inflater.get();
+        try {
+            inflater.setInput(input);
+
+            byte[] uncompressed = new byte[length];
+            int position = 0;
+            while (position < length) {
+                int inflated = inflater.inflate(uncompressed, position, length - position);
+                if (inflated == 0 && (inflater.needsInput() || inflater.finished() || inflater.needsDictionary())) {
+                    throw new IOException("Corrupted deflate compressed entry");
+                }
+                position += inflated;
+            }
+            return uncompressed;
+
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted deflate compressed entry", e);
+
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    private static void putInt(byte[] buffer, int value) {
+        buffer[0] = (byte) (value >>> 24);
+        buffer[1] = (byte) (value >>> 16);
+        buffer[2] = (byte) (value >>> 8);
+        buffer[3] = (byte) value;
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.codec;
+
+import com.noctarius.replikate.spi.JournalCompressionCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Fast, dependency free {@link JournalCompressionCodec} using a greedy LZ77 scheme in the spirit of LZ4. It trades
+ * compression ratio for speed and is a good fit for verbose, repetitive entries.
+ * <p>
+ * The compressed form is the uncompressed length followed by a sequence of blocks. Every block starts with a token
+ * whose high nibble is the number of literals and whose low nibble is the match length minus {@value #MIN_MATCH}, a
+ * nibble of 15 is continued by additional length bytes until a byte below 255 is found. The literals follow the
+ * token, then a two byte little endian offset back into the already uncompressed data and optional match length
+ * bytes. The last block only consists of literals.
+ */
+public class LzCompressionCodec
+        implements JournalCompressionCodec {
+
+    public static final byte CODEC_ID = 2;
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int NIBBLE_MASK = 0x0F;
+
+    private static final int HASH_BITS = 12;
+    private static final int HASH_SIZE = 1 << HASH_BITS;
+
+    private static final ThreadLocal<int[]> HASH_TABLE = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[HASH_SIZE];
+        }
+    };
+
+    @Override
+    public byte getCodecId() {
+        return CODEC_ID;
+    }
+
+    @Override
+    public byte[] compress(byte[] data)
+            throws IOException {
+
+        int length = data.length;
+        byte[] compressed = new byte[4 + length + length / 255 + 16];
+        compressed[0] = (byte) (length >>> 24);
+        compressed[1] = (byte) (length >>> 16);
+        compressed[2] = (byte) (length >>> 8);
+        compressed[3] = (byte) length;
+
+        int[] hashTable = HASH_TABLE.get();
+        Arrays.fill(hashTable, -1);
+
+        int position = 4;
+        int anchor = 0;
+        int offset = 0;
+        while (offset + MIN_MATCH <= length) {
+            int sequence = readInt(data, offset);
+            int hash = hash(sequence);
+            int reference = hashTable[hash];
+            hashTable[hash] = offset;
+
+            if (reference < 0 || offset - reference > MAX_OFFSET || readInt(data, reference) != sequence) {
+                offset++;
+                continue;
+            }
+
+            int matchLength = MIN_MATCH;
+            while (offset + matchLength < length && data[reference + matchLength] == data[offset + matchLength]) {
+                matchLength++;
+            }
+
+            position = writeBlock(compressed, position, data, anchor, offset - anchor, offset - reference, matchLength);
+            offset += matchLength;
+            anchor = offset;
+        }
+
+        position = writeLiterals(compressed, position, data, anchor, length - anchor, 0);
+        return Arrays.copyOf(compressed, position);
+    }
+
+    @Override
+    public byte[] decompress(ByteBuffer data)
+            throws IOException {
+
+        if (data.remaining() < 4) {
+            throw new IOException("Corrupted lz compressed entry");
+        }
+        int length = data.getInt();
+        if (length < 0) {
+            throw new IOException("Corrupted lz compressed entry");
+        }
+
+        byte[] uncompressed = new byte[length];
+        int position = 0;
+        while (data.hasRemaining()) {
+            int token = data.get() & 0xFF;
+
+            int literals = token >>> 4;
+            if (literals == NIBBLE_MASK) {
+                literals += readLength(data);
+            }
+            if (literals > length - position || literals > data.remaining()) {
+                throw new IOException("Corrupted lz compressed entry");
+            }
+            data.get(uncompressed, position, literals);
+            position += literals;
+
+            if (!data.hasRemaining()) {
+                break;
+            }
+
+            if (data.remaining() < 2) {
+                throw new IOException("Corrupted lz compressed entry");
+            }
+            int offset = (data.get() & 0xFF) | ((data.get() & 0xFF) << 8);
+            int matchLength = token & NIBBLE_MASK;
+            if (matchLength == NIBBLE_MASK) {
+                matchLength += readLength(data);
+            }
+            matchLength += MIN_MATCH;
+            if (offset == 0 || offset > position || matchLength > length - position) {
+                throw new IOException("Corrupted lz compressed entry");
+            }
+
+            // Byte by byte since the match may overlap with the bytes being written
+            for (int i = 0; i < matchLength; i++) {
+                uncompressed[position + i] = uncompressed[position - offset + i];
+            }
+            position += matchLength;
+        }
+
+        if (position != length) {
+            throw new IOException("Corrupted lz compressed entry");
+        }
+        return uncompressed;
+    }
+
+    private static int writeBlock(byte[] compressed, int position, byte[] data, int literalOffset, int literals,
+                                  int offset, int matchLength) {
+
+        int matchNibble = matchLength - MIN_MATCH;
+        position = writeLiterals(compressed, position, data, literalOffset, literals, Math.min(matchNibble, NIBBLE_MASK));
+
+        compressed[position++] = (byte) offset;
+        compressed[position++] = (byte) (offset >>> 8);
+        if (matchNibble >= NIBBLE_MASK) {
+            position = writeLength(compressed, position, matchNibble - NIBBLE_MASK);
+        }
+        return position;
+    }
+
+    private static int writeLiterals(byte[] compressed, int position, byte[] data, int literalOffset, int literals,
+                                     int matchNibble) {
+
+        compressed[position++] = (byte) ((Math.min(literals, NIBBLE_MASK) << 4) | matchNibble);
+        if (literals >= NIBBLE_MASK) {
+            position = writeLength(compressed, position, literals - NIBBLE_MASK);
+        }
+        System.arraycopy(data, literalOffset, compressed, position, literals);
+        return position + literals;
+    }
+
+    private static int writeLength(byte[] compressed, int position, int length) {
+        while (length >= 255) {
+            compressed[position++] = (byte) 255;
+            length -= 255;
+        }
+        compressed[position++] = (byte) length;
+        return position;
+    }
+
+    private static int readLength(ByteBuffer data)
+            throws IOException {
+
+        int length = 0;
+        int value;
+        do {
+            if (!data.hasRemaining()) {
+                throw new IOException("Corrupted lz compressed entry");
+            }
+            value = data.get() & 0xFF;
+            length += value;
+        } while (value == 255);
+        return length;
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8) | ((data[offset + 2] & 0xFF) << 16)
+                | ((data[offset + 3] & 0xFF) << 24);
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_BITS);
+    }
+
+}
@@ -19,16 +19,19 @@
 package com.noctarius.replikate.impl.disk;
 
 import com.noctarius.replikate.JournalBatch;
+import com.noctarius.replikate.JournalCursor;
 import com.noctarius.replikate.JournalListener;
-import com.noctarius.replikate.JournalNamingStrategy;
 import com.noctarius.replikate.JournalRecord;
 import com.noctarius.replikate.exceptions.JournalException;
 import com.noctarius.replikate.exceptions.SynchronousJournalException;
+import com.noctarius.replikate.impl.codec.DeflateCompressionCodec;
+import com.noctarius.replikate.impl.codec.LzCompressionCodec;
+import com.noctarius.replikate.impl.util.DirectBufferPool;
 import com.noctarius.replikate.impl.util.Tuple;
 import com.noctarius.replikate.spi.AbstractJournal;
-import com.noctarius.replikate.spi.JournalEntryReader;
-import com.noctarius.replikate.spi.JournalEntryWriter;
-import com.noctarius.replikate.spi.JournalRecordIdGenerator;
+import com.noctarius.replikate.spi.JournalCompressionCodec;
+import com.noctarius.replikate.spi.JournalEntryBufferWriter;
+import com.noctarius.replikate.spi.NamedThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,44 +40,111 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.createJournal;
 import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.prepareJournalEntry;
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.prepareRecordBlock;
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.prepareRecordFragment;
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.readCheckpoint;
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.recycleJournal;
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.writeCheckpoint;
 
 class DiskJournal<V>
         extends AbstractJournal<V> {
 
-    static final int JOURNAL_FILE_HEADER_SIZE = 25;
-    static final int JOURNAL_RECORD_HEADER_SIZE = 17;
+    // magic (4) + version (4) + maxLogFileSize (8) + logNumber (8) + type (1) + firstDataOffset (4)
+    static final int JOURNAL_FILE_HEADER_SIZE = 29;
+    // Before version 3 maxLogFileSize was stored as an int
+    static final int LEGACY_JOURNAL_FILE_HEADER_SIZE = 25;
+    static final int LEGACY_JOURNAL_FILE_HEADER_VERSION = 2;
+    // length (4) + recordId (8) + type (1) + flags (1) + data + checksum (4) + length (4)
+    static final int JOURNAL_RECORD_HEADER_SIZE = 22;
+    static final byte JOURNAL_RECORD_FLAGS_NONE = 0;
+    // Lower nibble of the record flags, the id of the compression codec or 0 if uncompressed
+    static final int JOURNAL_RECORD_FLAGS_CODEC_MASK = 0x0F;
+    // Record is a block of multiple entries, see DiskJournalIOUtils::prepareRecordBlock
+    static final byte JOURNAL_RECORD_FLAGS_BLOCK = 0x10;
+    // lastRecordId (8) + count (4)
+    static final int JOURNAL_RECORD_BLOCK_HEADER_SIZE = 12;
+    // recordId (8) + type (1) + length (4)
+    static final int JOURNAL_RECORD_BLOCK_ENTRY_HEADER_SIZE = 13;
+    // Record marks the begin of a batch, its data is the length of the batch's records (4) + count (4) + checksum (4)
+    static final byte JOURNAL_RECORD_FLAGS_BATCH_BEGIN = 0x20;
+    // Record marks the end of a completely written batch
+    static final byte JOURNAL_RECORD_FLAGS_BATCH_COMMIT = 0x40;
+    // Count of the begin marker of a batch that failed to be written
+    static final int JOURNAL_BATCH_ABORTED = -1;
+    static final int JOURNAL_BATCH_BEGIN_SIZE = JOURNAL_RECORD_HEADER_SIZE + 12;
+    // Record is a fragment of a record too large for a single journal file, see DiskJournalIOUtils::prepareRecordFragment
+    static final byte JOURNAL_RECORD_FLAGS_FRAGMENT = (byte) 0x80;
+    // kind (1) + length of the whole record's data (4) + offset (4)
+    static final int JOURNAL_RECORD_FRAGMENT_HEADER_SIZE = 9;
+    static final byte JOURNAL_FRAGMENT_FIRST = 1;
+    static final byte JOURNAL_FRAGMENT_MIDDLE = 2;
+    static final byte JOURNAL_FRAGMENT_LAST = 3;
+    static final int JOURNAL_BATCH_COMMIT_SIZE = JOURNAL_RECORD_HEADER_SIZE;
 
     static final byte JOURNAL_FILE_TYPE_DEFAULT = 1;
     static final byte JOURNAL_FILE_TYPE_OVERFLOW = 2;
     static final byte JOURNAL_FILE_TYPE_BATCH = 3;
 
-    private static final int JOURNAL_OVERFLOW_OVERHEAD_SIZE = JOURNAL_FILE_HEADER_SIZE + JOURNAL_RECORD_HEADER_SIZE;
+    static final String CHECKPOINT_FILE_NAME = "replikate.checkpoint";
+    static final int CHECKPOINT_FILE_SIZE = 16;
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_WRITE_BUFFERS = 16;
+
+    // Smaller leftovers of a journal file are not worth a fragment
+    private static final int MIN_FRAGMENT_SIZE = 64;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DiskJournal.class);
 
+    private static final JournalCompressionCodec[] BUILTIN_COMPRESSION_CODECS = {new DeflateCompressionCodec(),
+                                                                                  new LzCompressionCodec()};
+
     private final Deque<DiskJournalFile<V>> journalFiles = new ConcurrentLinkedDeque<>();
+    private final DirectBufferPool writeBufferPool = new DirectBufferPool(WRITE_BUFFER_SIZE, MAX_POOLED_WRITE_BUFFERS);
     private final AtomicBoolean shutdown = new AtomicBoolean(false);
+    private final Object checkpointLock = new Object();
+    private final Object committerLock = new Object();
 
+    private final DiskJournalConfiguration<V> configuration;
+    private final DiskJournalSegmentAllocator<V> segmentAllocator;
+    private final DiskJournalSegmentPool segmentPool;
+    private final ScheduledExecutorService syncExecutorService;
     private final JournalListener<V> listener;
     private final Path journalPath;
-    private final int maxLogFileSize;
+    private final long maxLogFileSize;
 
-    DiskJournal(String name, Path journalPath, JournalListener<V> listener, int maxLogFileSize,
-                JournalRecordIdGenerator recordIdGenerator, JournalEntryReader<V> reader, JournalEntryWriter<V> writer,
-                JournalNamingStrategy namingStrategy, ExecutorService listenerExecutorService)
+    private volatile DiskJournalGroupCommitter<V> groupCommitter;
+    private volatile long checkpointRecordId;
+
+    DiskJournal(String name, DiskJournalConfiguration<V> configuration, ExecutorService listenerExecutorService)
             throws IOException {
 
-        super(name, recordIdGenerator, reader, writer, namingStrategy, listenerExecutorService);
-        this.journalPath = journalPath;
-        this.maxLogFileSize = maxLogFileSize;
-        this.listener = listener;
+        super(name, configuration.getRecordIdGenerator(), configuration.getEntryReader(), configuration.getEntryWriter(),
+                configuration.getNamingStrategy(), listenerExecutorService);
+
+        this.configuration = configuration;
+        this.journalPath = configuration.getJournalPath();
+        this.maxLogFileSize = configuration.getMaxLogFileSize();
+        this.listener = configuration.getListener();
 
         if (!Files.isDirectory(journalPath, LinkOption.NOFOLLOW_LINKS)) {
             throw new IllegalArgumentException("journalPath is not a directory");
@@ -82,6 +152,19 @@ class DiskJournal<V>
 
         LOGGER.info("{}: DiskJournal starting up in {}...", getName(), journalPath.toFile().getAbsolutePath());
 
+        if (configuration.getMaxRecycledJournalFiles() > 0) {
+            segmentPool = new DiskJournalSegmentPool(getName(), journalPath, maxLogFileSize,
+                    configuration.getMaxRecycledJournalFiles());
+        } else {
+            segmentPool = null;
+        }
+
+        checkpointRecordId = readCheckpoint(journalPath);
+        if (checkpointRecordId != -1) {
+            // Even if all journal files are gone already, recordIds must not start over
+            getRecordIdGenerator().notifyHighestJournalRecordId(checkpointRecordId);
+        }
+
         boolean needsReplay = false;
         File path = journalPath.toFile();
         for (File child : path.listFiles()) {
@@ -90,7 +173,7 @@ class DiskJournal<V>
             }
 
             String filename = child.getName();
-            if (namingStrategy.isJournal(filename)) {
+            if (getNamingStrategy().isJournal(filename)) {
                 // At least one journal file is still existing so start replay
                 needsReplay = true;
                 break;
@@ -102,6 +185,28 @@ class DiskJournal<V>
             DiskJournalReplayer<V> replayer = new DiskJournalReplayer<>(this, listener);
             replayer.replay();
         }
+
+        if (configuration.getPreallocatedJournalFiles() > 0) {
+            segmentAllocator = new DiskJournalSegmentAllocator<>(this, configuration.getPreallocatedJournalFiles());
+        } else {
+            segmentAllocator = null;
+        }
+
+        if (configuration.isGroupCommit() || configuration.getRingBufferSize() > 0) {
+            // With the ring buffer every append is handed over to the single writer thread
+            long windowMicros = configuration.isGroupCommit() ? configuration.getGroupCommitWindowMicros() : 0;
+            groupCommitter = new DiskJournalGroupCommitter<>(this, buildCommitQueue(), configuration.getGroupCommitMaxBytes(),
+                    windowMicros);
+            groupCommitter.start();
+        }
+
+        if (configuration.getSyncMode() == DiskJournalSyncMode.SyncInterval) {
+            long interval = configuration.getSyncIntervalMillis();
+            syncExecutorService = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("RepliKate-Sync"));
+            syncExecutorService.scheduleWithFixedDelay(this::syncJournalFile, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            syncExecutorService = null;
+        }
     }
 
     @Override
@@ -119,7 +224,134 @@ class DiskJournal<V>
             return;
         }
 
-        flushEntry(entry, type, listener);
+        if (groupCommitter != null) {
+            groupCommitEntry(entry, type, listener);
+        } else {
+            flushEntry(entry, type, listener);
+        }
+    }
+
+    @Override
+    public CompletableFuture<JournalRecord<V>> appendEntryAsync(V entry, byte type) {
+        return appendEntryAsync(entry, type, listener);
+    }
+
+    @Override
+    public CompletableFuture<JournalRecord<V>> appendEntryAsync(V entry, byte type, JournalListener<V> listener) {
+        if (shutdown.get()) {
+            return failedFuture(new JournalException("DiskJournal already closed"));
+        }
+
+        return submitEntry(entry, type, listener);
+    }
+
+    @Override
+    public void checkpoint(long recordId)
+            throws JournalException {
+
+        if (shutdown.get()) {
+            return;
+        }
+
+        // A checkpoint ahead of the journal would cover records appended later on
+        long lastRecordId = getRecordIdGenerator().lastGeneratedRecordId();
+        if (recordId > lastRecordId) {
+            throw new IllegalArgumentException(
+                    "recordId " + recordId + " is ahead of the last generated recordId " + lastRecordId);
+        }
+
+        List<DiskJournalFile<V>> coveredJournalFiles = new ArrayList<>();
+        synchronized (checkpointLock) {
+            if (recordId <= checkpointRecordId) {
+                return;
+            }
+
+            try {
+                writeCheckpoint(journalPath, recordId);
+            } catch (IOException e) {
+                throw new SynchronousJournalException("Failed to persist checkpoint", e);
+            }
+            checkpointRecordId = recordId;
+
+            synchronized (journalFiles) {
+                DiskJournalFile<V> currentJournalFile = journalFiles.peek();
+                Iterator<DiskJournalFile<V>> iterator = journalFiles.iterator();
+                while (iterator.hasNext()) {
+                    DiskJournalFile<V> journalFile = iterator.next();
+
+                    // The current journal file is kept as long as it is written to
+                    if (journalFile == currentJournalFile && journalFile.isWritable()) {
+                        continue;
+                    }
+
+                    if (journalFile.getLastRecordId() <= recordId) {
+                        iterator.remove();
+                        coveredJournalFiles.add(journalFile);
+                    }
+                }
+            }
+        }
+
+        // Closing and removing is done outside of the lock to not stall appending threads
+        for (DiskJournalFile<V> journalFile : coveredJournalFiles) {
+            try {
+                LOGGER.debug("{}: Removing journal file {} covered by checkpoint {}", getName(),
+                        journalFile.getFileName(), recordId);
+                recycleJournalFile(journalFile);
+            } catch (IOException e) {
+                LOGGER.warn("{}: Could not remove journal file {}", getName(), journalFile.getFileName(), e);
+            }
+        }
+    }
+
+    @Override
+    public JournalRecord<V> readRecord(long recordId)
+            throws JournalException {
+
+        List<JournalRecord<V>> records = readRange(recordId, recordId);
+        return records.isEmpty() ? null : records.get(0);
+    }
+
+    @Override
+    public List<JournalRecord<V>> readRange(long fromRecordId, long toRecordId)
+            throws JournalException {
+
+        if (shutdown.get()) {
+            throw new JournalException("DiskJournal already closed");
+        }
+
+        // Only journal files storing recordIds of the range are read
+        List<DiskJournalFile<V>> candidates = new ArrayList<>();
+        synchronized (journalFiles) {
+            for (DiskJournalFile<V> journalFile : journalFiles) {
+                long firstRecordId = journalFile.getFirstRecordId();
+                if (firstRecordId != -1 && firstRecordId <= toRecordId && journalFile.getLastRecordId() >= fromRecordId) {
+                    candidates.add(journalFile);
+                }
+            }
+        }
+        Collections.sort(candidates);
+
+        List<JournalRecord<V>> records = new ArrayList<>();
+        DiskJournalRecordAssembler<V> assembler = new DiskJournalRecordAssembler<>(this);
+        try {
+            for (DiskJournalFile<V> journalFile : candidates) {
+                readRange(journalFile, fromRecordId, toRecordId, assembler, records);
+            }
+        } catch (IOException e) {
+            throw new JournalException("Failed to read records " + fromRecordId + " to " + toRecordId, e);
+        }
+        return records;
+    }
+
+    @Override
+    public JournalCursor<V> openCursor(long recordId)
+            throws JournalException {
+
+        if (shutdown.get()) {
+            throw new JournalException("DiskJournal already closed");
+        }
+        return new DiskJournalTailingCursor<>(this, recordId, configuration.getWaitStrategy());
     }
 
     @Override
@@ -140,6 +372,27 @@ class DiskJournal<V>
             return;
         }
 
+        DiskJournalGroupCommitter<V> committer;
+        synchronized (committerLock) {
+            committer = groupCommitter;
+        }
+
+        if (committer != null) {
+            committer.shutdown();
+        }
+
+        if (syncExecutorService != null) {
+            syncExecutorService.shutdown();
+        }
+
+        if (segmentAllocator != null) {
+            segmentAllocator.shutdown();
+        }
+
+        if (segmentPool != null) {
+            segmentPool.shutdown();
+        }
+
         synchronized (journalFiles) {
             for (DiskJournalFile<V> journalFile : journalFiles) {
                 journalFile.close();
@@ -147,7 +400,15 @@ class DiskJournal<V>
         }
     }
 
-    int getMaxLogFileSize() {
+    int getReplayThreads() {
+        return configuration.getReplayThreads();
+    }
+
+    long getCheckpointRecordId() {
+        return checkpointRecordId;
+    }
+
+    long getMaxLogFileSize() {
         return maxLogFileSize;
     }
 
@@ -155,6 +416,69 @@ class DiskJournal<V>
         return journalPath;
     }
 
+    int getRecordIndexInterval() {
+        return configuration.getRecordIndexInterval();
+    }
+
+    /**
+     * @param logNumber the logNumber of the journal file
+     * @return the path of the journal file's index, named like the journal file itself but in its own subdirectory
+     */
+    Path resolveIndexFile(long logNumber) {
+        return journalPath.resolve(DiskJournalSegmentIndex.INDEX_DIRECTORY).resolve(getNamingStrategy().generate(logNumber));
+    }
+
+    DirectBufferPool getWriteBufferPool() {
+        return writeBufferPool;
+    }
+
+    JournalCompressionCodec getCompressionCodec() {
+        return configuration.getCompressionCodec();
+    }
+
+    /**
+     * Finds the codec a record was compressed with. Besides the configured codec the built-in codecs are always known,
+     * so records stay readable after the configured codec was changed.
+     *
+     * @param codecId the codec id stored in the record flags
+     * @return the matching codec
+     * @throws IOException if no codec with the given id is known
+     */
+    JournalCompressionCodec resolveCompressionCodec(int codecId)
+            throws IOException {
+
+        JournalCompressionCodec codec = configuration.getCompressionCodec();
+        if (codec != null && codec.getCodecId() == codecId) {
+            return codec;
+        }
+        for (JournalCompressionCodec builtinCodec : BUILTIN_COMPRESSION_CODECS) {
+            if (builtinCodec.getCodecId() == codecId) {
+                return builtinCodec;
+            }
+        }
+        throw new IOException("Unknown compression codec " + codecId);
+    }
+
+    boolean isBatchCompression() {
+        return configuration.isBatchCompression();
+    }
+
+    DiskJournalPreallocation getPreallocation() {
+        return configuration.getPreallocation();
+    }
+
+    DiskJournalSyncMode getSyncMode() {
+        return configuration.getSyncMode();
+    }
+
+    int getSyncBytes() {
+        return configuration.getSyncBytes();
+    }
+
+    long getSyncIntervalMillis() {
+        return configuration.getSyncIntervalMillis();
+    }
+
     void commitBatchProcess(final JournalBatch<V> journalBatch, final List<DiskJournalEntry<V>> entries, final int dataSize,
                             JournalListener<V> listener)
             throws JournalException {
@@ -163,12 +487,84 @@ class DiskJournal<V>
             throw new JournalException("DiskJournal already closed");
         }
 
-        JournalException exception = executeBatch(entries, journalBatch, dataSize, listener);
-        if (exception != null) {
-            throw exception;
+        if (groupCommitter == null) {
+            executeBatch(entries, journalBatch, dataSize, listener);
+            return;
+        }
+
+        // Entries might be enqueued for group commit, the batch has to keep its place in line
+        try {
+            commitBatchProcessAsync(journalBatch, entries, dataSize, listener).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JournalException) {
+                throw (JournalException) e.getCause();
+            }
+            throw new JournalException("Failed to persist journal batch process", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SynchronousJournalException("Interrupted while waiting for batch commit", e);
         }
     }
 
+    CompletableFuture<List<JournalRecord<V>>> commitBatchProcessAsync(JournalBatch<V> journalBatch,
+                                                                       List<DiskJournalEntry<V>> entries, int dataSize,
+                                                                       JournalListener<V> listener) {
+
+        if (shutdown.get()) {
+            return failedFuture(new JournalException("DiskJournal already closed"));
+        }
+
+        DiskJournalBatchCommitRequest<V> request = new DiskJournalBatchCommitRequest<>(journalBatch, entries, dataSize,
+                listener);
+
+        try {
+            committer().submit(request);
+        } catch (JournalException e) {
+            if (listener != null) {
+                onFailure(listener, journalBatch, e);
+            }
+            return failedFuture(e);
+        }
+        return request.getBatchFuture();
+    }
+
+    void flushBatch(DiskJournalBatchCommitRequest<V> request) {
+        try {
+            List<JournalRecord<V>> records = executeBatch(request.getEntries(), request.getJournalBatch(),
+                    request.getDataSize(), request.getListener());
+
+            request.getBatchFuture().complete(records);
+        } catch (JournalException e) {
+            request.getBatchFuture().completeExceptionally(e);
+        }
+    }
+
+    boolean isShutdown() {
+        return shutdown.get();
+    }
+
+    /**
+     * Finds the journal file a reader continues with after the given one, the oldest remaining journal file that might
+     * contain the given recordId or later ones.
+     *
+     * @param logNumber the logNumber of the journal file read before, -1 to start with the oldest one
+     * @param recordId  the next recordId the reader is interested in
+     * @return the journal file or null if there is none (yet)
+     */
+    DiskJournalFile<V> nextJournalFile(long logNumber, long recordId) {
+        DiskJournalFile<V> next = null;
+        synchronized (journalFiles) {
+            for (DiskJournalFile<V> journalFile : journalFiles) {
+                long lastRecordId = journalFile.getLastRecordId();
+                boolean candidate = journalFile.isWritable() || lastRecordId == -1 || lastRecordId >= recordId;
+                if (candidate && journalFile.getLogNumber() > logNumber && (next == null || journalFile.compareTo(next) < 0)) {
+                    next = journalFile;
+                }
+            }
+        }
+        return next;
+    }
+
     void pushJournalFileFromReplay(DiskJournalFile<V> diskJournalFile) {
         synchronized (journalFiles) {
             journalFiles.push(diskJournalFile);
@@ -176,29 +572,202 @@ class DiskJournal<V>
         }
     }
 
-    private void flushEntry(V entry, byte type, JournalListener<V> listener) {
+    void flushEntries(List<DiskJournalCommitRequest<V>> requests) {
+        List<DiskJournalEntry<V>> entries = new ArrayList<>(requests.size());
+        for (DiskJournalCommitRequest<V> request : requests) {
+            entries.add(request.getEntry());
+        }
+
+        int index = 0;
         try {
             synchronized (journalFiles) {
-                DiskJournalFile<V> journalFile = journalFiles.peek();
-                if (journalFile == null) {
-                    // Replay not required or succeed so start new journal
-                    journalFile = buildJournalFile();
-                    journalFiles.push(journalFile);
+                while (index < entries.size()) {
+                    DiskJournalFile<V> journalFile = currentJournalFile();
+
+                    Tuple<DiskJournalAppendResult, List<JournalRecord<V>>> result = journalFile
+                            .appendRecordGroup(entries.subList(index, entries.size()));
+
+                    for (JournalRecord<V> record : result.getRight()) {
+                        commitRequest(requests.get(index++), record);
+                    }
+
+                    if (result.getLeft() == DiskJournalAppendResult.JOURNAL_OVERFLOW) {
+                        LOGGER.debug("Journal full, overflowing to next one...");
+                        journalFile.close();
+                        journalFiles.push(buildJournalFile());
+
+                    } else if (result.getLeft() == DiskJournalAppendResult.JOURNAL_FULL_OVERFLOW) {
+                        JournalRecord<V> record = appendFragmented(journalFile, entries.get(index));
+                        commitRequest(requests.get(index++), record);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            SynchronousJournalException exception = new SynchronousJournalException("Failed to persist journal entry", e);
+            for (int i = index; i < requests.size(); i++) {
+                failRequest(requests.get(i), exception);
+            }
+        }
+    }
+
+    /**
+     * Announces the failure of a commit request to its listener and completes its future exceptionally.
+     *
+     * @param request   the failed commit request
+     * @param exception the cause of the failure
+     */
+    void failRequest(DiskJournalCommitRequest<V> request, JournalException exception) {
+        try {
+            if (request.getListener() != null) {
+                if (request.isBatch()) {
+                    onFailure(request.getListener(), ((DiskJournalBatchCommitRequest<V>) request).getJournalBatch(),
+                            exception);
+                } else {
+                    DiskJournalEntry<V> entry = request.getEntry();
+                    onFailure(request.getListener(), entry.getValue(), entry.getType(), exception);
                 }
+            }
+        } finally {
+            if (request.isBatch()) {
+                ((DiskJournalBatchCommitRequest<V>) request).getBatchFuture().completeExceptionally(exception);
+            } else {
+                request.getFuture().completeExceptionally(exception);
+            }
+        }
+    }
+
+    private void groupCommitEntry(V entry, byte type, JournalListener<V> listener) {
+        try {
+            submitEntry(entry, type, listener).get();
+        } catch (ExecutionException e) {
+            // Failure was already announced to the listener
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SynchronousJournalException("Interrupted while waiting for group commit", e);
+        }
+    }
+
+    private CompletableFuture<JournalRecord<V>> submitEntry(V entry, byte type, JournalListener<V> listener) {
+        DiskJournalCommitRequest<V> request;
+        try {
+            request = new DiskJournalCommitRequest<>(prepareJournalEntry(entry, type, getWriter(), getCompressionCodec()), listener);
+        } catch (IOException e) {
+            JournalException exception = new SynchronousJournalException("Failed to persist journal entry", e);
+            if (listener != null) {
+                onFailure(listener, entry, type, exception);
+            }
+            return failedFuture(exception);
+        }
+
+        try {
+            committer().submit(request);
+        } catch (JournalException e) {
+            if (listener != null) {
+                onFailure(listener, entry, type, e);
+            }
+            return failedFuture(e);
+        }
+        return request.getFuture();
+    }
+
+    private DiskJournalGroupCommitter<V> committer() {
+        DiskJournalGroupCommitter<V> committer = groupCommitter;
+        if (committer != null) {
+            return committer;
+        }
+
+        synchronized (committerLock) {
+            if (groupCommitter == null) {
+                if (shutdown.get()) {
+                    throw new SynchronousJournalException("DiskJournal already closed");
+                }
+
+                // Without group commit configured, asynchronous appends only coalesce what is enqueued already
+                committer = new DiskJournalGroupCommitter<>(this, buildCommitQueue(), configuration.getGroupCommitMaxBytes(), 0);
+                committer.start();
+                groupCommitter = committer;
+            }
+            return groupCommitter;
+        }
+    }
+
+    private BlockingQueue<DiskJournalCommitRequest<V>> buildCommitQueue() {
+        if (configuration.getRingBufferSize() > 0) {
+            return new DiskJournalRingBuffer<>(configuration.getRingBufferSize(), configuration.getWaitStrategy());
+        }
+        return new LinkedBlockingQueue<>();
+    }
+
+    private void commitRequest(DiskJournalCommitRequest<V> request, JournalRecord<V> record) {
+        if (request.getListener() != null) {
+            onCommit(request.getListener(), record);
+        }
+        request.getFuture().complete(record);
+    }
+
+    private void syncJournalFile() {
+        DiskJournalFile<V> journalFile = journalFiles.peek();
+        if (journalFile == null) {
+            return;
+        }
+
+        try {
+            journalFile.sync();
+        } catch (IOException e) {
+            LOGGER.warn("{}: Failed to sync journal file {}", getName(), journalFile.getFileName(), e);
+        }
+    }
+
+    private DiskJournalFile<V> currentJournalFile()
+            throws IOException {
 
-                DiskJournalEntry<V> recordEntry = prepareJournalEntry(entry, type, getWriter());
+        DiskJournalFile<V> journalFile = journalFiles.peek();
+        if (journalFile == null || !journalFile.isWritable()) {
+            // Replay not required or succeed (replayed files are read-only) so start new journal
+            journalFile = buildJournalFile();
+            journalFiles.push(journalFile);
+        }
+        return journalFile;
+    }
 
-                Tuple<DiskJournalAppendResult, JournalRecord<V>> result = journalFile.appendRecord(recordEntry);
-                if (result.getLeft() == DiskJournalAppendResult.APPEND_SUCCESSFUL) {
-                    if (listener != null) {
-                        onCommit(listener, result.getRight());
+    private void flushEntry(V entry, byte type, JournalListener<V> listener) {
+        try {
+            // Compressed entries need their serialized form upfront
+            if (getWriter() instanceof JournalEntryBufferWriter && getCompressionCodec() == null) {
+                synchronized (journalFiles) {
+                    if (flushEntryDirect(new DiskJournalEntry<>(entry, type), listener)) {
+                        return;
                     }
+                }
+            }
 
-                } else if (result.getLeft() == DiskJournalAppendResult.JOURNAL_OVERFLOW) {
-                    overflowJournal(entry, type, listener, journalFile);
+            // Serialization happens before taking the journal lock
+            DiskJournalEntry<V> recordEntry = prepareJournalEntry(entry, type, getWriter(), getCompressionCodec());
 
-                } else if (result.getLeft() == DiskJournalAppendResult.JOURNAL_FULL_OVERFLOW) {
-                    overflowLargeJournal(listener, journalFile, recordEntry);
+            synchronized (journalFiles) {
+                while (true) {
+                    DiskJournalFile<V> journalFile = currentJournalFile();
+
+                    Tuple<DiskJournalAppendResult, JournalRecord<V>> result = journalFile.appendRecord(recordEntry);
+                    if (result.getLeft() == DiskJournalAppendResult.APPEND_SUCCESSFUL) {
+                        if (listener != null) {
+                            onCommit(listener, result.getRight());
+                        }
+
+                    } else if (result.getLeft() == DiskJournalAppendResult.JOURNAL_OVERFLOW) {
+                        // Retry the already serialized entry in the next journal file
+                        overflowJournal(journalFile);
+                        continue;
+
+                    } else if (result.getLeft() == DiskJournalAppendResult.JOURNAL_FULL_OVERFLOW) {
+                        JournalRecord<V> record = appendFragmented(journalFile, recordEntry);
+
+                        // Notify listeners about flushed to journal
+                        if (listener != null) {
+                            onCommit(listener, record);
+                        }
+                    }
+                    return;
                 }
             }
         } catch (IOException e) {
@@ -208,36 +777,68 @@ class DiskJournal<V>
         }
     }
 
-    private void overflowLargeJournal(JournalListener<V> listener, DiskJournalFile<V> journalFile,
-                                      DiskJournalEntry<V> recordEntry)
+    private boolean flushEntryDirect(DiskJournalEntry<V> entry, JournalListener<V> listener)
             throws IOException {
 
-        Tuple<DiskJournalAppendResult, JournalRecord<V>> result;
-        LOGGER.debug("Record dataset too large for normal journal, using overflow journal file");
+        DiskJournalFile<V> journalFile = currentJournalFile();
 
-        // Close current journal file ...
-        journalFile.close();
+        JournalEntryBufferWriter<V> writer = (JournalEntryBufferWriter<V>) getWriter();
+        Tuple<DiskJournalAppendResult, JournalRecord<V>> result = journalFile.appendRecordDirect(entry, writer);
+        if (result == null) {
+            return false;
+        }
 
-        // Calculate overflow filelength
-        int length = recordEntry.cachedData.length + DiskJournal.JOURNAL_OVERFLOW_OVERHEAD_SIZE;
+        if (result.getLeft() == DiskJournalAppendResult.APPEND_SUCCESSFUL) {
+            if (listener != null) {
+                onCommit(listener, result.getRight());
+            }
+            return true;
+        }
 
-        // ... and start new journal ...
-        journalFile = buildJournalFile(length, DiskJournal.JOURNAL_FILE_TYPE_OVERFLOW);
-        journalFiles.push(journalFile);
+        // The next journal file is empty, if the entry does not fit there either it takes the regular path
+        overflowJournal(journalFile);
+        return flushEntryDirect(entry, listener);
+    }
 
-        // ... finally retry to write to journal
-        result = journalFile.appendRecord(recordEntry);
-        if (result.getLeft() != DiskJournalAppendResult.APPEND_SUCCESSFUL) {
-            throw new SynchronousJournalException("Overflow file could not be written");
-        }
+    /**
+     * Splits a record too large for a single journal file into fragments, starting in the current journal file and
+     * continuing in as many following journal files as needed. All fragments share the record's recordId, replay
+     * reassembles them (see {@link DiskJournalReplayer}).
+     */
+    private JournalRecord<V> appendFragmented(DiskJournalFile<V> journalFile, DiskJournalEntry<V> recordEntry)
+            throws IOException {
+
+        LOGGER.debug("Record dataset too large for normal journal, splitting it into fragments");
+
+        long recordId = getRecordIdGenerator().nextRecordId();
+        byte[] data = recordEntry.cachedData;
+
+        int offset = 0;
+        while (offset < data.length) {
+            long remaining = journalFile.getHeader().getMaxLogFileSize() - journalFile.getPosition();
+            int available = (int) Math.min(Integer.MAX_VALUE, remaining) - DiskJournal.JOURNAL_RECORD_HEADER_SIZE
+                    - DiskJournal.JOURNAL_RECORD_FRAGMENT_HEADER_SIZE;
 
-        // Notify listeners about flushed to journal
-        if (listener != null) {
-            onCommit(listener, result.getRight());
+            if (available < MIN_FRAGMENT_SIZE) {
+                overflowJournal(journalFile);
+                journalFile = journalFiles.peek();
+                continue;
+            }
+
+            int length = Math.min(available, data.length - offset);
+            byte kind = offset == 0 ? JOURNAL_FRAGMENT_FIRST
+                    : offset + length == data.length ? JOURNAL_FRAGMENT_LAST : JOURNAL_FRAGMENT_MIDDLE;
+
+            DiskJournalEntry<V> fragment = prepareRecordFragment(recordEntry, kind, offset, length);
+            if (journalFile.appendRecordFragment(recordId, fragment) != DiskJournalAppendResult.APPEND_SUCCESSFUL) {
+                throw new SynchronousJournalException("Record fragment could not be written");
+            }
+            offset += length;
         }
+        return new DiskJournalRecord<>(recordEntry, recordId);
     }
 
-    private void overflowJournal(V entry, byte type, JournalListener<V> listener, DiskJournalFile<V> journalFile)
+    private void overflowJournal(DiskJournalFile<V> journalFile)
             throws IOException {
 
         LOGGER.debug("Journal full, overflowing to next one...");
@@ -245,37 +846,156 @@ class DiskJournal<V>
         // Close current journal file ...
         journalFile.close();
 
-        // ... and start new journal ...
+        // ... and start new journal
         journalFiles.push(buildJournalFile());
+    }
 
-        // ... finally retry to write to journal
-        appendEntry(entry, type, listener);
+    /**
+     * Creates (or reuses a recycled) default journal file at the given path, its header does not carry a logNumber yet.
+     *
+     * @param file the path to preallocate the journal file at
+     * @throws IOException if the journal file could not be created
+     */
+    void preallocateJournalFile(Path file)
+            throws IOException {
+
+        DiskJournalFileHeader header = DiskJournalFile.buildHeader(getMaxLogFileSize(), JOURNAL_FILE_TYPE_DEFAULT, -1);
+        if (segmentPool == null || !segmentPool.reuse(file, header)) {
+            createJournal(file, header, getPreallocation());
+        }
+    }
+
+    void discardPreallocatedJournalFile(Path file)
+            throws IOException {
+
+        DiskJournalFileHeader header = DiskJournalFile.buildHeader(getMaxLogFileSize(), JOURNAL_FILE_TYPE_DEFAULT, -1);
+        if (segmentPool == null || !segmentPool.recycle(file, header, header.getFirstDataOffset())) {
+            Files.deleteIfExists(file);
+        }
     }
 
     private DiskJournalFile<V> buildJournalFile()
             throws IOException {
 
-        return buildJournalFile(getMaxLogFileSize(), DiskJournal.JOURNAL_FILE_TYPE_DEFAULT);
+        if (segmentAllocator != null) {
+            Path segment = segmentAllocator.poll();
+            if (segment != null) {
+                // The logNumber is assigned right now, after all journal files already in use
+                long logNumber = nextLogNumber();
+                File journalFile = new File(journalPath.toFile(), getNamingStrategy().generate(logNumber));
+                DiskJournalFileHeader header = DiskJournalFile.buildHeader(getMaxLogFileSize(), JOURNAL_FILE_TYPE_DEFAULT,
+                        logNumber);
+
+                Files.move(segment, journalFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                recycleJournal(journalFile.toPath(), header);
+                return openJournalFile(journalFile, header);
+            }
+            LOGGER.debug("{}: No preallocated journal file available, creating one inline", getName());
+        }
+        return buildJournalFile(getMaxLogFileSize(), JOURNAL_FILE_TYPE_DEFAULT);
     }
 
-    private DiskJournalFile<V> buildJournalFile(int maxLogFileSize, byte type)
+    private DiskJournalFile<V> buildJournalFile(long maxLogFileSize, byte type)
             throws IOException {
 
         long logNumber = nextLogNumber();
         String filename = getNamingStrategy().generate(logNumber);
         File journalFile = new File(journalPath.toFile(), filename);
-        return new DiskJournalFile<>(this, journalFile, logNumber, maxLogFileSize, type);
+
+        DiskJournalFileHeader header = DiskJournalFile.buildHeader(maxLogFileSize, type, logNumber);
+        if (segmentPool == null || !segmentPool.reuse(journalFile.toPath(), header)) {
+            createJournal(journalFile.toPath(), header, getPreallocation());
+        }
+        return openJournalFile(journalFile, header);
+    }
+
+    private DiskJournalFile<V> openJournalFile(File journalFile, DiskJournalFileHeader header)
+            throws IOException {
+
+        if (configuration.isMemoryMapped()) {
+            return new DiskJournalMappedFile<>(this, journalFile, header);
+        }
+        return new DiskJournalChannelFile<>(this, journalFile, header);
+    }
+
+    private void readRange(DiskJournalFile<V> journalFile, long fromRecordId, long toRecordId,
+                           DiskJournalRecordAssembler<V> assembler, List<JournalRecord<V>> records)
+            throws IOException {
+
+        File file = journalPath.resolve(journalFile.getFileName()).toFile();
+        if (!file.exists()) {
+            // Removed by a checkpoint in the meantime
+            return;
+        }
+
+        // Sealed journal files are positioned using their index, the current one is read from the beginning
+        try (DiskJournalSegmentCursor<V> cursor = new DiskJournalSegmentCursor<>(this, file, journalFile.getIndex(),
+                journalFile.getWrittenPosition())) {
+            cursor.seek(fromRecordId);
+            while (cursor.hasNext() && cursor.peekRecordId() <= toRecordId) {
+                DiskJournalRecord<V> record = cursor.next();
+                if (record instanceof DiskJournalRecordFragment) {
+                    record = assembler.assemble((DiskJournalRecordFragment<V>) record);
+                    if (record == null) {
+                        continue;
+                    }
+                } else {
+                    assembler.discard();
+                }
+                records.add(record);
+            }
+        }
+    }
+
+    static <T> CompletableFuture<T> failedFuture(Throwable throwable) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+    DiskJournalSegmentPool getSegmentPool() {
+        return segmentPool;
+    }
+
+    boolean isRecyclingJournalFiles() {
+        return segmentPool != null;
+    }
+
+    /**
+     * Closes the given journal file and hands it over to the segment pool for reuse. If recycling is disabled or the
+     * file does not fit the pool it is deleted, its index is deleted in any case.
+     *
+     * @param journalFile the journal file that is no longer needed
+     * @throws IOException if the journal file could not be closed, recycled or deleted
+     */
+    void recycleJournalFile(DiskJournalFile<V> journalFile)
+            throws IOException {
+
+        DiskJournalFileHeader header = journalFile.getHeader();
+
+        // Only for files written by this instance it is known how much of the file is in use
+        long dirtyEnd = journalFile.isWritable() ? journalFile.getPosition() : header.getMaxLogFileSize();
+        journalFile.markRemoved();
+        journalFile.close();
+
+        Path file = journalPath.resolve(journalFile.getFileName());
+        Files.deleteIfExists(resolveIndexFile(header.getLogNumber()));
+        if (segmentPool == null || !segmentPool.recycle(file, header, dirtyEnd)) {
+            Files.deleteIfExists(file);
+        }
     }
 
-    private JournalException executeBatch(List<DiskJournalEntry<V>> entries, JournalBatch<V> journalBatch, int dataSize,
-                                          JournalListener<V> listener) {
+    private List<JournalRecord<V>> executeBatch(List<DiskJournalEntry<V>> entries, JournalBatch<V> journalBatch,
+                                                int dataSize, JournalListener<V> listener)
+            throws JournalException {
 
         synchronized (journalFiles) {
             // Storing current recordId for case of rollback
             long markedRecordId = getRecordIdGenerator().lastGeneratedRecordId();
 
+            List<JournalRecord<V>> records;
             try {
-                commitBatch(dataSize, entries);
+                records = commitBatch(dataSize, entries);
 
             } catch (Exception e) {
                 JournalException exception = new JournalException("Failed to persist journal batch process", e);
@@ -284,52 +1004,93 @@ class DiskJournal<V>
                     onFailure(listener, journalBatch, exception);
                 }
 
-                // Rollback the journal file
-                rollbackBatch();
+                // The journal file needs no rollback, failed batches are aborted in place (and skipped by replay)
 
                 // Rollback the recordId
                 getRecordIdGenerator().notifyHighestJournalRecordId(markedRecordId);
-                return exception;
+                throw exception;
             }
-        }
-        return null;
-    }
 
-    void rollbackBatch() {
-        DiskJournalFile<V> journalFile = journalFiles.pop();
-        try {
-            if (journalFile.getHeader().getType() == JOURNAL_FILE_TYPE_BATCH) {
-                journalFile.close();
-                String fileName = journalFile.getFileName();
-                Files.delete(journalPath.resolve(fileName));
+            // The batch is persisted, failing listeners must not roll it back anymore
+            for (JournalRecord<V> record : records) {
+                onCommit(listener, record);
             }
-        } catch (IOException ioe) {
-            throw new JournalException("Could not rollback journal batch file", ioe);
+            return records;
         }
     }
 
-    void commitBatch(int dataSize, List<DiskJournalEntry<V>> entries)
+    List<JournalRecord<V>> commitBatch(int dataSize, List<DiskJournalEntry<V>> entries)
             throws IOException {
 
-        // Calculate the file size of the batch journal file ...
-        int calculatedDataSize = dataSize + (entries.size() * DiskJournal.JOURNAL_RECORD_HEADER_SIZE);
-        int calculatedLogFileSize = calculatedDataSize + DiskJournal.JOURNAL_FILE_HEADER_SIZE;
+        if (entries.isEmpty()) {
+            return Collections.emptyList();
+        }
 
-        // ... and start new journal
-        DiskJournalFile<V> journalFile = buildJournalFile(calculatedLogFileSize, JOURNAL_FILE_TYPE_BATCH);
-        journalFiles.push(journalFile);
+        if (isBatchCompression()) {
+            return commitBatchBlock(entries);
+        }
 
-        // Persist all entries to disk ...
-        Tuple<DiskJournalAppendResult, List<JournalRecord<V>>> result = journalFile.appendRecords(entries, calculatedDataSize);
+        // Calculate the size of the batch including its begin and commit markers ...
+        int calculatedDataSize = dataSize + (entries.size() * DiskJournal.JOURNAL_RECORD_HEADER_SIZE);
+        int batchSize = calculatedDataSize + DiskJournal.JOURNAL_BATCH_BEGIN_SIZE + DiskJournal.JOURNAL_BATCH_COMMIT_SIZE;
+
+        // ... and persist all entries to disk at once
+        DiskJournalFile<V> journalFile = batchJournalFile(batchSize);
+        Tuple<DiskJournalAppendResult, List<JournalRecord<V>>> result;
+        result = journalFile.appendRecordBatch(entries, calculatedDataSize);
 
         if (result.getLeft() != DiskJournalAppendResult.APPEND_SUCCESSFUL) {
             throw new SynchronousJournalException("Failed to persist journal entry");
         }
+        return result.getRight();
+    }
+
+    /**
+     * Batches are appended to the current journal file, only batches that exceed a journal file on their own are
+     * written into a batch journal file of exactly their size.
+     */
+    private DiskJournalFile<V> batchJournalFile(int batchSize)
+            throws IOException {
+
+        if (batchSize > getMaxLogFileSize() - DiskJournal.JOURNAL_FILE_HEADER_SIZE) {
+            // The batch journal file takes over as the current journal file, the previous one is sealed
+            DiskJournalFile<V> currentJournalFile = journalFiles.peek();
+            if (currentJournalFile != null && currentJournalFile.isWritable()) {
+                currentJournalFile.close();
+            }
+
+            DiskJournalFile<V> journalFile = buildJournalFile(batchSize + JOURNAL_FILE_HEADER_SIZE, JOURNAL_FILE_TYPE_BATCH);
+            journalFiles.push(journalFile);
+            return journalFile;
+        }
 
-        // ... and if non of them failed just announce them as committed
-        for (JournalRecord<V> record : result.getRight()) {
-            onCommit(listener, record);
+        DiskJournalFile<V> journalFile = currentJournalFile();
+        if (journalFile.getPosition() + batchSize > journalFile.getHeader().getMaxLogFileSize()) {
+            overflowJournal(journalFile);
+            journalFile = journalFiles.peek();
+        }
+        return journalFile;
+    }
+
+    private List<JournalRecord<V>> commitBatchBlock(List<DiskJournalEntry<V>> entries)
+            throws IOException {
+
+        // RecordIds are assigned upfront since they are part of the compressed block
+        List<DiskJournalRecord<V>> records = new ArrayList<>(entries.size());
+        for (DiskJournalEntry<V> entry : entries) {
+            records.add(new DiskJournalRecord<>(entry, getRecordIdGenerator().nextRecordId()));
+        }
+
+        // All entries are compressed together and written as a single record, which needs no batch markers
+        DiskJournalEntry<V> block = prepareRecordBlock(records, entries, getCompressionCodec());
+        int calculatedDataSize = block.cachedData.length + DiskJournal.JOURNAL_RECORD_HEADER_SIZE;
+
+        DiskJournalFile<V> journalFile = batchJournalFile(calculatedDataSize);
+        Tuple<DiskJournalAppendResult, List<JournalRecord<V>>> result = journalFile.appendRecordBlock(records, block);
+        if (result.getLeft() != DiskJournalAppendResult.APPEND_SUCCESSFUL) {
+            throw new SynchronousJournalException("Failed to persist journal entry");
         }
+        return result.getRight();
     }
 
 }
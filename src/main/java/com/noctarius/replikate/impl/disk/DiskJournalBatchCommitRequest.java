@@ -0,0 +1,81 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.JournalBatch;
+import com.noctarius.replikate.JournalListener;
+import com.noctarius.replikate.JournalRecord;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Commit request of a whole {@link JournalBatch}. Batches are never coalesced with other requests but are written on
+ * their own, in the order they were submitted.
+ */
+class DiskJournalBatchCommitRequest<V>
+        extends DiskJournalCommitRequest<V> {
+
+    private final CompletableFuture<List<JournalRecord<V>>> batchFuture = new CompletableFuture<>();
+
+    private final JournalBatch<V> journalBatch;
+    private final List<DiskJournalEntry<V>> entries;
+    private final int dataSize;
+
+    DiskJournalBatchCommitRequest(JournalBatch<V> journalBatch, List<DiskJournalEntry<V>> entries, int dataSize,
+                                  JournalListener<V> listener) {
+
+        super(null, listener);
+        this.journalBatch = journalBatch;
+        this.entries = entries;
+        this.dataSize = dataSize;
+    }
+
+    JournalBatch<V> getJournalBatch() {
+        return journalBatch;
+    }
+
+    List<DiskJournalEntry<V>> getEntries() {
+        return entries;
+    }
+
+    int getDataSize() {
+        return dataSize;
+    }
+
+    CompletableFuture<List<JournalRecord<V>>> getBatchFuture() {
+        return batchFuture;
+    }
+
+    @Override
+    boolean isDone() {
+        return batchFuture.isDone();
+    }
+
+    @Override
+    int getLength() {
+        return dataSize + entries.size() * DiskJournal.JOURNAL_RECORD_HEADER_SIZE;
+    }
+
+    @Override
+    boolean isBatch() {
+        return true;
+    }
+
+}
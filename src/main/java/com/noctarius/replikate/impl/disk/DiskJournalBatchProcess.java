@@ -21,11 +21,14 @@ package com.noctarius.replikate.impl.disk;
 import com.noctarius.replikate.JournalBatch;
 import com.noctarius.replikate.spi.JournalEntry;
 import com.noctarius.replikate.JournalListener;
+import com.noctarius.replikate.JournalRecord;
 import com.noctarius.replikate.exceptions.JournalException;
+import com.noctarius.replikate.spi.JournalCompressionCodec;
 
 import java.io.IOException;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.prepareJournalEntry;
@@ -33,7 +36,7 @@ import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.prepareJourna
 class DiskJournalBatchProcess<V>
         implements JournalBatch<V> {
 
-    private final List<DiskJournalEntry<V>> entries = new LinkedList<>();
+    private final List<DiskJournalEntry<V>> entries = new ArrayList<>();
     private final AtomicBoolean committed = new AtomicBoolean(false);
 
     private final JournalListener<V> listener;
@@ -51,7 +54,9 @@ class DiskJournalBatchProcess<V>
             throws JournalException {
 
         try {
-            DiskJournalEntry<V> batchEntry = prepareJournalEntry(entry, type, journal.getWriter());
+            // With batch compression the entries are compressed together at commit time
+            JournalCompressionCodec codec = journal.isBatchCompression() ? null : journal.getCompressionCodec();
+            DiskJournalEntry<V> batchEntry = prepareJournalEntry(entry, type, journal.getWriter(), codec);
             entries.add(batchEntry);
             dataSize += batchEntry.cachedData.length;
 
@@ -71,6 +76,15 @@ class DiskJournalBatchProcess<V>
         journal.commitBatchProcess(this, entries, dataSize, listener);
     }
 
+    @Override
+    public CompletableFuture<List<JournalRecord<V>>> commitAsync() {
+        if (!committed.compareAndSet(false, true)) {
+            return DiskJournal.failedFuture(new JournalException("Batch already committed"));
+        }
+
+        return journal.commitBatchProcessAsync(this, entries, dataSize, listener);
+    }
+
     @Override
     public String toString() {
         return "DiskJournalBatchProcess [committed=" + committed + ", entries=" + entries + "]";
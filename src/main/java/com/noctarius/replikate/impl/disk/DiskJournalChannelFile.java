@@ -0,0 +1,220 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.impl.util.DirectBufferPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.putRecordHeader;
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.putRecordTrailer;
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.writeFully;
+
+/**
+ * Journal file implementation based on a {@link FileChannel}. Records are framed into pooled direct buffers and written
+ * using gathering writes. Payloads of any size are copied into the pooled buffers, handing a heap buffer to the channel
+ * would only make the JDK copy it into a temporary direct buffer. Large payloads are streamed in chunks of
+ * {@link #MAX_GATHERING_BUFFERS} buffers, so a write never holds more than that many pooled buffers. If the journal
+ * file is opened with DSYNC or SYNC, every channel write is synced by itself, so writes are never streamed but handed
+ * over as a single gathering write.
+ * <p>
+ * If a write fails the channel is moved back to the end of the records written so far, torn data is overwritten by the
+ * next write.
+ */
+class DiskJournalChannelFile<V>
+        extends DiskJournalFile<V> {
+
+    static final int MAX_GATHERING_BUFFERS = 16;
+
+    private final DirectBufferPool bufferPool;
+    private final FileChannel channel;
+    private final boolean streaming;
+
+    private long position;
+
+    DiskJournalChannelFile(String fileName, DiskJournalFileHeader header, DiskJournal<V> journal) {
+        super(journal, fileName, header, false);
+        this.bufferPool = null;
+        this.channel = null;
+        this.streaming = false;
+    }
+
+    DiskJournalChannelFile(DiskJournal<V> journal, File file, DiskJournalFileHeader header)
+            throws IOException {
+
+        super(journal, file.getName(), header, true);
+        this.bufferPool = journal.getWriteBufferPool();
+        this.channel = FileChannel.open(file.toPath(), journal.getSyncMode().getOpenOptions());
+        this.streaming = !journal.getSyncMode().isSyncOnWrite();
+        this.position = header.getFirstDataOffset();
+        this.channel.position(position);
+    }
+
+    @Override
+    void writeRecords(List<DiskJournalRecord<V>> records, List<DiskJournalEntry<V>> entries, int[] checksums,
+                      int dataSize)
+            throws IOException {
+
+        List<ByteBuffer> acquired = new ArrayList<>();
+        List<ByteBuffer> gathering = new ArrayList<>();
+        try {
+            ByteBuffer buffer = acquire(acquired);
+            for (int i = 0; i < records.size(); i++) {
+                DiskJournalRecord<V> record = records.get(i);
+                byte[] entryData = entries.get(i).cachedData;
+                int recordLength = DiskJournal.JOURNAL_RECORD_HEADER_SIZE + entryData.length;
+                byte flags = entries.get(i).flags;
+
+                buffer = ensureRemaining(buffer, RECORD_FRAME_HEADER_SIZE, acquired, gathering);
+                putRecordHeader(buffer, recordLength, record.getRecordId(), record.getType(), flags);
+
+                int offset = 0;
+                while (offset < entryData.length) {
+                    buffer = ensureRemaining(buffer, 1, acquired, gathering);
+                    int length = Math.min(buffer.remaining(), entryData.length - offset);
+                    buffer.put(entryData, offset, length);
+                    offset += length;
+                }
+
+                buffer = ensureRemaining(buffer, RECORD_FRAME_TRAILER_SIZE, acquired, gathering);
+                putRecordTrailer(buffer, checksums[i], recordLength);
+            }
+            gathering.add(finish(buffer));
+
+            // Everything not streamed yet is written by a single gathering write
+            writeFully(channel, gathering.toArray(new ByteBuffer[gathering.size()]));
+            position += dataSize;
+
+        } catch (IOException | RuntimeException e) {
+            rewind(e);
+            throw e;
+
+        } finally {
+            for (ByteBuffer buffer : acquired) {
+                bufferPool.release(buffer);
+            }
+        }
+    }
+
+    @Override
+    void seek(long position)
+            throws IOException {
+
+        channel.position(position);
+        this.position = position;
+    }
+
+    @Override
+    ByteBuffer acquireRecordBuffer(int maxRecordLength) {
+        ByteBuffer buffer = bufferPool.acquire();
+        buffer.limit(Math.min(buffer.capacity(), maxRecordLength));
+        return buffer;
+    }
+
+    @Override
+    void writeRecordBuffer(ByteBuffer buffer, int recordLength)
+            throws IOException {
+
+        buffer.limit(recordLength);
+        buffer.position(0);
+        try {
+            writeFully(channel, new ByteBuffer[]{buffer});
+        } catch (IOException e) {
+            rewind(e);
+            throw e;
+        }
+        position += recordLength;
+    }
+
+    @Override
+    void releaseRecordBuffer(ByteBuffer buffer, boolean written) {
+        bufferPool.release(buffer);
+    }
+
+    @Override
+    void force()
+            throws IOException {
+
+        channel.force(false);
+    }
+
+    @Override
+    void closeFile()
+            throws IOException {
+
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    @Override
+    long getPosition() {
+        return position;
+    }
+
+    @Override
+    boolean requiresExplicitSync() {
+        return false;
+    }
+
+    private ByteBuffer ensureRemaining(ByteBuffer buffer, int required, List<ByteBuffer> acquired, List<ByteBuffer> gathering)
+            throws IOException {
+
+        if (buffer.remaining() >= required) {
+            return buffer;
+        }
+        gathering.add(finish(buffer));
+
+        if (streaming && gathering.size() >= MAX_GATHERING_BUFFERS) {
+            // Stream what is framed so far, the buffers are reused for the rest of the write
+            writeFully(channel, gathering.toArray(new ByteBuffer[gathering.size()]));
+            gathering.clear();
+            for (ByteBuffer written : acquired) {
+                bufferPool.release(written);
+            }
+            acquired.clear();
+        }
+        return acquire(acquired);
+    }
+
+    private void rewind(Exception cause) {
+        try {
+            channel.position(position);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private ByteBuffer acquire(List<ByteBuffer> acquired) {
+        ByteBuffer buffer = bufferPool.acquire();
+        acquired.add(buffer);
+        return buffer;
+    }
+
+    private ByteBuffer finish(ByteBuffer buffer) {
+        buffer.flip();
+        return buffer;
+    }
+
+}
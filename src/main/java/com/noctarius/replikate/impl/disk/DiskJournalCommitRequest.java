@@ -0,0 +1,68 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.JournalListener;
+import com.noctarius.replikate.JournalRecord;
+
+import java.util.concurrent.CompletableFuture;
+
+class DiskJournalCommitRequest<V> {
+
+    private final CompletableFuture<JournalRecord<V>> future = new CompletableFuture<>();
+
+    private final DiskJournalEntry<V> entry;
+    private final JournalListener<V> listener;
+
+    DiskJournalCommitRequest(DiskJournalEntry<V> entry, JournalListener<V> listener) {
+        this.entry = entry;
+        this.listener = listener;
+    }
+
+    DiskJournalEntry<V> getEntry() {
+        return entry;
+    }
+
+    JournalListener<V> getListener() {
+        return listener;
+    }
+
+    CompletableFuture<JournalRecord<V>> getFuture() {
+        return future;
+    }
+
+    /**
+     * @return true if the request is either committed or failed
+     */
+    boolean isDone() {
+        return future.isDone();
+    }
+
+    int getLength() {
+        return entry.cachedData.length + DiskJournal.JOURNAL_RECORD_HEADER_SIZE;
+    }
+
+    /**
+     * @return true if this request commits a whole {@link com.noctarius.replikate.JournalBatch}
+     */
+    boolean isBatch() {
+        return false;
+    }
+
+}
@@ -19,6 +19,7 @@
 package com.noctarius.replikate.impl.disk;
 
 import com.noctarius.replikate.JournalConfiguration;
+import com.noctarius.replikate.spi.JournalCompressionCodec;
 
 import java.nio.file.Path;
 
@@ -27,7 +28,39 @@ public class DiskJournalConfiguration<V>
 
     private Path journalPath;
 
-    private int maxLogFileSize;
+    private long maxLogFileSize;
+
+    private boolean memoryMapped = false;
+
+    private DiskJournalPreallocation preallocation = DiskJournalPreallocation.ZeroFill;
+
+    private int preallocatedJournalFiles = 0;
+
+    private int maxRecycledJournalFiles = 0;
+
+    private DiskJournalSyncMode syncMode = DiskJournalSyncMode.SyncMetadata;
+
+    private int syncBytes = 1024 * 1024;
+
+    private long syncIntervalMillis = 50;
+
+    private boolean groupCommit = false;
+
+    private int groupCommitMaxBytes = 256 * 1024;
+
+    private long groupCommitWindowMicros = 1000;
+
+    private int ringBufferSize = 0;
+
+    private int replayThreads = 1;
+
+    private int recordIndexInterval = 64;
+
+    private DiskJournalWaitStrategy waitStrategy = DiskJournalWaitStrategy.Park;
+
+    private JournalCompressionCodec compressionCodec;
+
+    private boolean batchCompression = false;
 
     public Path getJournalPath() {
         return journalPath;
@@ -37,12 +70,220 @@ public class DiskJournalConfiguration<V>
         this.journalPath = journalPath;
     }
 
-    public int getMaxLogFileSize() {
+    public long getMaxLogFileSize() {
         return maxLogFileSize;
     }
 
-    public void setMaxLogFileSize(int maxLogFileSize) {
+    /**
+     * Sets the size of a journal file. Journal files larger than 2GB are supported, records inside are still limited to
+     * 2GB each and memory mapped journal files are mapped in windows.
+     *
+     * @param maxLogFileSize the size of a journal file in bytes
+     */
+    public void setMaxLogFileSize(long maxLogFileSize) {
         this.maxLogFileSize = maxLogFileSize;
     }
 
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Enables memory mapped journal files. Every preallocated journal file is mapped into memory and records are copied
+     * straight into the mapped buffer instead of issuing a write call per record.
+     *
+     * @param memoryMapped true to use memory mapped journal files
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    public DiskJournalPreallocation getPreallocation() {
+        return preallocation;
+    }
+
+    public void setPreallocation(DiskJournalPreallocation preallocation) {
+        this.preallocation = preallocation;
+    }
+
+    public int getPreallocatedJournalFiles() {
+        return preallocatedJournalFiles;
+    }
+
+    /**
+     * Sets the number of journal files kept created and preallocated in the background. With at least one preallocated
+     * journal file an overflow of the current journal file does not need to wait for the next one being created.
+     *
+     * @param preallocatedJournalFiles the number of ready journal files, 0 disables background preallocation
+     */
+    public void setPreallocatedJournalFiles(int preallocatedJournalFiles) {
+        this.preallocatedJournalFiles = preallocatedJournalFiles;
+    }
+
+    public int getMaxRecycledJournalFiles() {
+        return maxRecycledJournalFiles;
+    }
+
+    /**
+     * Sets the maximum number of no longer needed journal files kept for reuse. Reusing an already allocated file on
+     * rollover avoids the block allocation and metadata updates of creating a new one.
+     *
+     * @param maxRecycledJournalFiles the maximum number of pooled journal files, 0 disables recycling
+     */
+    public void setMaxRecycledJournalFiles(int maxRecycledJournalFiles) {
+        this.maxRecycledJournalFiles = maxRecycledJournalFiles;
+    }
+
+    public int getReplayThreads() {
+        return replayThreads;
+    }
+
+    /**
+     * Sets the number of threads reading and decoding journal files concurrently during replay. Records are still
+     * announced in recordId order.
+     *
+     * @param replayThreads the number of replay threads, 1 reads all journal files on the starting thread
+     */
+    public void setReplayThreads(int replayThreads) {
+        this.replayThreads = replayThreads;
+    }
+
+    public int getRecordIndexInterval() {
+        return recordIndexInterval;
+    }
+
+    /**
+     * Sets the distance in recordIds between two entries of the sparse index written for every journal file. Smaller
+     * intervals mean less records to read in front of a requested recordId but larger indexes.
+     *
+     * @param recordIndexInterval the number of recordIds between two indexed records
+     */
+    public void setRecordIndexInterval(int recordIndexInterval) {
+        this.recordIndexInterval = recordIndexInterval;
+    }
+
+    public JournalCompressionCodec getCompressionCodec() {
+        return compressionCodec;
+    }
+
+    /**
+     * Sets the codec used to compress serialized entries before they are written. Entries not getting smaller are
+     * stored uncompressed. Records are flagged with the id of their codec, records written with a built-in codec
+     * ({@link com.noctarius.replikate.impl.codec.DeflateCompressionCodec},
+     * {@link com.noctarius.replikate.impl.codec.LzCompressionCodec}) stay readable after changing the codec.
+     *
+     * @param compressionCodec the codec to use, null disables compression
+     */
+    public void setCompressionCodec(JournalCompressionCodec compressionCodec) {
+        this.compressionCodec = compressionCodec;
+    }
+
+    public boolean isBatchCompression() {
+        return batchCompression;
+    }
+
+    /**
+     * Enables block compression of batches. Instead of compressing every entry on its own, all entries of a
+     * {@link com.noctarius.replikate.JournalBatch} are compressed together into a single record, which works a lot better
+     * for many small, similar entries. Requires a {@link #setCompressionCodec(JournalCompressionCodec) compression codec}.
+     *
+     * @param batchCompression true to compress batches as a whole
+     */
+    public void setBatchCompression(boolean batchCompression) {
+        this.batchCompression = batchCompression;
+    }
+
+    public DiskJournalSyncMode getSyncMode() {
+        return syncMode;
+    }
+
+    public void setSyncMode(DiskJournalSyncMode syncMode) {
+        this.syncMode = syncMode;
+    }
+
+    public int getSyncBytes() {
+        return syncBytes;
+    }
+
+    /**
+     * Sets the amount of written bytes after which data is synced to disk when using {@link DiskJournalSyncMode#SyncBytes}.
+     *
+     * @param syncBytes the number of bytes between two syncs
+     */
+    public void setSyncBytes(int syncBytes) {
+        this.syncBytes = syncBytes;
+    }
+
+    public long getSyncIntervalMillis() {
+        return syncIntervalMillis;
+    }
+
+    /**
+     * Sets the maximum time between two syncs when using {@link DiskJournalSyncMode#SyncInterval}.
+     *
+     * @param syncIntervalMillis the interval between two syncs in milliseconds
+     */
+    public void setSyncIntervalMillis(long syncIntervalMillis) {
+        this.syncIntervalMillis = syncIntervalMillis;
+    }
+
+    public boolean isGroupCommit() {
+        return groupCommit;
+    }
+
+    /**
+     * Enables group commit. Concurrent appenders are coalesced into a single write (and therefore a single disk sync) per
+     * commit window, the window is closed either when {@link #getGroupCommitMaxBytes()} is reached or when
+     * {@link #getGroupCommitWindowMicros()} elapsed since the first entry of the window was enqueued.
+     *
+     * @param groupCommit true to enable group commit
+     */
+    public void setGroupCommit(boolean groupCommit) {
+        this.groupCommit = groupCommit;
+    }
+
+    public int getGroupCommitMaxBytes() {
+        return groupCommitMaxBytes;
+    }
+
+    public void setGroupCommitMaxBytes(int groupCommitMaxBytes) {
+        this.groupCommitMaxBytes = groupCommitMaxBytes;
+    }
+
+    public long getGroupCommitWindowMicros() {
+        return groupCommitWindowMicros;
+    }
+
+    public void setGroupCommitWindowMicros(long groupCommitWindowMicros) {
+        this.groupCommitWindowMicros = groupCommitWindowMicros;
+    }
+
+    public int getRingBufferSize() {
+        return ringBufferSize;
+    }
+
+    /**
+     * Enables the ring buffer ingest mode. Appending threads publish their serialized entries into a bounded lock-free
+     * ring buffer and a single writer thread drains it into the journal, instead of all appending threads contending
+     * on the journal's locks. If group commit is enabled as well the writer thread honors its commit window.
+     *
+     * @param ringBufferSize the number of slots, must be a power of two, 0 disables the ring buffer
+     */
+    public void setRingBufferSize(int ringBufferSize) {
+        this.ringBufferSize = ringBufferSize;
+    }
+
+    public DiskJournalWaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * Sets how the writer thread waits for new entries and appending threads wait for free slots of the ring buffer.
+     *
+     * @param waitStrategy the wait strategy
+     */
+    public void setWaitStrategy(DiskJournalWaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
 }
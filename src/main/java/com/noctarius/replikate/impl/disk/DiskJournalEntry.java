@@ -28,6 +28,11 @@ class DiskJournalEntry<V>
      */
     volatile byte[] cachedData = null;
 
+    /**
+     * Record flags matching the cached data, always written before {@link #cachedData}
+     */
+    byte flags = DiskJournal.JOURNAL_RECORD_FLAGS_NONE;
+
     DiskJournalEntry(V value, byte type) {
         super(value, type);
     }
@@ -20,13 +20,9 @@ package com.noctarius.replikate.impl.disk;
 
 import com.noctarius.replikate.Journal;
 import com.noctarius.replikate.JournalConfiguration;
-import com.noctarius.replikate.JournalListener;
-import com.noctarius.replikate.JournalNamingStrategy;
 import com.noctarius.replikate.exceptions.JournalConfigurationException;
-import com.noctarius.replikate.spi.JournalEntryReader;
-import com.noctarius.replikate.spi.JournalEntryWriter;
+import com.noctarius.replikate.spi.JournalCompressionCodec;
 import com.noctarius.replikate.spi.JournalFactory;
-import com.noctarius.replikate.spi.JournalRecordIdGenerator;
 import com.noctarius.replikate.spi.Preconditions;
 
 import java.io.IOException;
@@ -46,12 +42,7 @@ public class DiskJournalFactory<V>
         DiskJournalConfiguration<V> diskConfig = (DiskJournalConfiguration<V>) configuration;
 
         Path journalingPath = diskConfig.getJournalPath();
-        JournalListener<V> listener = diskConfig.getListener();
-        int maxLogFileSize = diskConfig.getMaxLogFileSize();
-        JournalRecordIdGenerator recordIdGenerator = diskConfig.getRecordIdGenerator();
-        JournalEntryReader<V> entryReader = diskConfig.getEntryReader();
-        JournalEntryWriter<V> entryWriter = diskConfig.getEntryWriter();
-        JournalNamingStrategy namingStrategy = diskConfig.getNamingStrategy();
+        long maxLogFileSize = diskConfig.getMaxLogFileSize();
 
         Preconditions.notNull(journalingPath, "configuration.journalingPath");
 
@@ -59,9 +50,64 @@ public class DiskJournalFactory<V>
             throw new IllegalArgumentException("configuration.maxLogFileSize must not be below " + MIN_DISK_JOURNAL_FILE_SIZE);
         }
 
+        Preconditions.notNull(diskConfig.getSyncMode(), "configuration.syncMode");
+        Preconditions.notNull(diskConfig.getPreallocation(), "configuration.preallocation");
+
+        if (diskConfig.getPreallocatedJournalFiles() < 0) {
+            throw new IllegalArgumentException("configuration.preallocatedJournalFiles must not be negative");
+        }
+
+        if (diskConfig.getMaxRecycledJournalFiles() < 0) {
+            throw new IllegalArgumentException("configuration.maxRecycledJournalFiles must not be negative");
+        }
+
+        if (diskConfig.getReplayThreads() < 1) {
+            throw new IllegalArgumentException("configuration.replayThreads must be positive");
+        }
+
+        if (diskConfig.getRecordIndexInterval() < 1) {
+            throw new IllegalArgumentException("configuration.recordIndexInterval must be positive");
+        }
+
+        if (diskConfig.getSyncMode() == DiskJournalSyncMode.SyncBytes && diskConfig.getSyncBytes() <= 0) {
+            throw new IllegalArgumentException("configuration.syncBytes must be positive");
+        }
+
+        if (diskConfig.getSyncMode() == DiskJournalSyncMode.SyncInterval && diskConfig.getSyncIntervalMillis() <= 0) {
+            throw new IllegalArgumentException("configuration.syncIntervalMillis must be positive");
+        }
+
+        if (diskConfig.getRingBufferSize() < 0) {
+            throw new IllegalArgumentException("configuration.ringBufferSize must not be negative");
+        }
+
+        if (diskConfig.getRingBufferSize() > 0 && Integer.bitCount(diskConfig.getRingBufferSize()) != 1) {
+            throw new IllegalArgumentException("configuration.ringBufferSize must be a power of two");
+        }
+
+        Preconditions.notNull(diskConfig.getWaitStrategy(), "configuration.waitStrategy");
+
+        JournalCompressionCodec compressionCodec = diskConfig.getCompressionCodec();
+        if (compressionCodec != null && (compressionCodec.getCodecId() < 1
+                || compressionCodec.getCodecId() > DiskJournal.JOURNAL_RECORD_FLAGS_CODEC_MASK)) {
+            throw new IllegalArgumentException("configuration.compressionCodec must have a codecId between 1 and 15");
+        }
+
+        if (diskConfig.isBatchCompression() && compressionCodec == null) {
+            throw new IllegalArgumentException("configuration.batchCompression requires a compressionCodec");
+        }
+
+        if (diskConfig.isGroupCommit()) {
+            if (diskConfig.getGroupCommitMaxBytes() <= 0) {
+                throw new IllegalArgumentException("configuration.groupCommitMaxBytes must be positive");
+            }
+            if (diskConfig.getGroupCommitWindowMicros() < 0) {
+                throw new IllegalArgumentException("configuration.groupCommitWindowMicros must not be negative");
+            }
+        }
+
         try {
-            return new DiskJournal<>(name, journalingPath, listener, maxLogFileSize, recordIdGenerator, entryReader, entryWriter,
-                    namingStrategy, listenerExecutorService);
+            return new DiskJournal<>(name, diskConfig, listenerExecutorService);
 
         } catch (IOException e) {
             throw new JournalConfigurationException("Error while configuring the journal", e);
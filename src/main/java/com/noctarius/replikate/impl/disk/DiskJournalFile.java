@@ -20,60 +20,75 @@ package com.noctarius.replikate.impl.disk;
 
 import com.noctarius.replikate.Journal;
 import com.noctarius.replikate.JournalRecord;
-import com.noctarius.replikate.exceptions.JournalException;
-import com.noctarius.replikate.impl.util.ByteArrayBufferOutputStream;
+import com.noctarius.replikate.impl.util.Crc32c;
 import com.noctarius.replikate.impl.util.Tuple;
+import com.noctarius.replikate.spi.JournalEntryBufferWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.util.LinkedList;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.Checksum;
 
-import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.createJournal;
-import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.prepareBulkRecord;
-import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.writeRecord;
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.batchChecksum;
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.prepareBatchBegin;
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.prepareBatchCommit;
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.putRecordHeader;
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.putRecordTrailer;
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.recordChecksum;
 
-class DiskJournalFile<V>
+abstract class DiskJournalFile<V>
         implements Comparable<DiskJournalFile<V>> {
 
     private final Logger LOGGER = LoggerFactory.getLogger(DiskJournalFile.class);
 
+    // length (4) + recordId (8) + type (1) + flags (1)
+    static final int RECORD_FRAME_HEADER_SIZE = 14;
+    // checksum (4) + length (4)
+    static final int RECORD_FRAME_TRAILER_SIZE = 8;
+
     private final Lock appendLock = new ReentrantLock();
 
     private final DiskJournalFileHeader header;
     private final DiskJournal<V> journal;
-    private final RandomAccessFile raf;
     private final String fileName;
+    private final boolean writable;
+    private final Checksum checksum;
 
-    DiskJournalFile(DiskJournal<V> journal, File file, long logNumber, int maxLogFileSize, byte type)
-            throws IOException {
+    // Index of the records written by this instance, written when the journal file is sealed
+    private final DiskJournalSegmentIndex index;
 
-        this(journal, file, logNumber, maxLogFileSize, type, true);
-    }
+    private int unsyncedBytes = 0;
+    private long lastSyncNanos = System.nanoTime();
+    private volatile boolean closed = false;
 
-    DiskJournalFile(DiskJournal<V> journal, File file, long logNumber, int maxLogFileSize, byte type, boolean createIfNotExisting)
-            throws IOException {
+    private volatile long firstRecordId = -1;
+    private volatile long lastRecordId = -1;
 
-        if (!file.exists() && !createIfNotExisting) {
-            throw new JournalException("File " + file.getAbsolutePath() + " does not exists and creation is forbidden");
-        }
+    // Known index of the sealed journal file, null while the journal file is written to or if it is not indexed
+    private volatile DiskJournalSegmentIndex sealedIndex;
 
-        this.journal = journal;
-        this.fileName = file.getName();
-        this.raf = new RandomAccessFile(file, "rws");
-        this.header = createJournal(raf, buildHeader(maxLogFileSize, type, logNumber));
-    }
+    // End of the last completely written record, readers of a journal file still written to never read behind it
+    private volatile long writtenPosition;
+
+    // Set once the journal file is removed or recycled, readers cannot trust its content anymore
+    private volatile boolean removed;
 
-    DiskJournalFile(RandomAccessFile raf, String fileName, DiskJournalFileHeader header, DiskJournal<V> journal) {
-        this.raf = raf;
+    DiskJournalFile(DiskJournal<V> journal, String fileName, DiskJournalFileHeader header, boolean writable) {
+        this.journal = journal;
         this.fileName = fileName;
         this.header = header;
-        this.journal = journal;
+        this.writable = writable;
+        this.checksum = writable ? Crc32c.newChecksum() : null;
+        this.index = writable ? new DiskJournalSegmentIndex(journal.getRecordIndexInterval()) : null;
+        this.writtenPosition = writable ? header.getFirstDataOffset() : Long.MAX_VALUE;
     }
 
     @Override
@@ -85,6 +100,10 @@ class DiskJournalFile<V>
         return fileName;
     }
 
+    boolean isWritable() {
+        return writable && !closed;
+    }
+
     Tuple<DiskJournalAppendResult, JournalRecord<V>> appendRecord(DiskJournalEntry<V> entry)
             throws IOException {
 
@@ -98,7 +117,7 @@ class DiskJournalFile<V>
 
             byte[] entryData = entry.cachedData;
             int length = entryData.length + DiskJournal.JOURNAL_RECORD_HEADER_SIZE;
-            if (length > header.getMaxLogFileSize()) {
+            if (length > header.getMaxLogFileSize() - header.getFirstDataOffset()) {
                 return new Tuple<>(DiskJournalAppendResult.JOURNAL_FULL_OVERFLOW, null);
             } else if (header.getMaxLogFileSize() < getPosition() + length) {
                 return new Tuple<>(DiskJournalAppendResult.JOURNAL_OVERFLOW, null);
@@ -106,7 +125,13 @@ class DiskJournalFile<V>
 
             long recordId = journal.getRecordIdGenerator().nextRecordId();
             DiskJournalRecord<V> record = new DiskJournalRecord<V>(entry, recordId);
-            writeRecord(record, entryData, raf);
+            List<DiskJournalRecord<V>> records = Collections.singletonList(record);
+            List<DiskJournalEntry<V>> entries = Collections.singletonList(entry);
+            long position = getPosition();
+            writeRecords(records, entries, recordChecksums(records, entries), length);
+            afterWrite(length);
+            trackRecordId(recordId);
+            index.add(recordId, position);
 
             return new Tuple<>(DiskJournalAppendResult.APPEND_SUCCESSFUL, record);
 
@@ -116,7 +141,18 @@ class DiskJournalFile<V>
         }
     }
 
-    Tuple<DiskJournalAppendResult, List<JournalRecord<V>>> appendRecords(List<DiskJournalEntry<V>> entries, int dataSize)
+    /**
+     * Appends the entries as a batch, enclosed by a begin and a commit marker. The batch is written by a single write
+     * call, replay only delivers the batch's records if the commit marker was written as well and the count and
+     * checksum of the begin marker match the records. If writing fails the batch is aborted in place.
+     *
+     * @param entries  the entries of the batch
+     * @param dataSize the overall size of all framed records, excluding the markers
+     * @return the append result and the batch's records
+     * @throws IOException if writing to the underlying file failed
+     */
+    Tuple<DiskJournalAppendResult, List<JournalRecord<V>>> appendRecordBatch(List<DiskJournalEntry<V>> entries,
+                                                                            int dataSize)
             throws IOException {
 
         long nanoSeconds = System.nanoTime();
@@ -124,30 +160,363 @@ class DiskJournalFile<V>
         try {
             appendLock.lock();
 
-            byte[] data = new byte[dataSize];
-            List<JournalRecord<V>> records = new LinkedList<>();
-            try (ByteArrayBufferOutputStream out = new ByteArrayBufferOutputStream(data)) {
-                for (DiskJournalEntry<V> entry : entries) {
+            int length = dataSize + DiskJournal.JOURNAL_BATCH_BEGIN_SIZE + DiskJournal.JOURNAL_BATCH_COMMIT_SIZE;
+            if (length > header.getMaxLogFileSize() - header.getFirstDataOffset()) {
+                return new Tuple<>(DiskJournalAppendResult.JOURNAL_FULL_OVERFLOW, null);
+            } else if (header.getMaxLogFileSize() < getPosition() + length) {
+                return new Tuple<>(DiskJournalAppendResult.JOURNAL_OVERFLOW, null);
+            }
+
+            List<DiskJournalRecord<V>> records = new ArrayList<>(entries.size());
+            for (DiskJournalEntry<V> entry : entries) {
+                long recordId = journal.getRecordIdGenerator().nextRecordId();
+                records.add(new DiskJournalRecord<V>(entry, recordId));
+            }
+
+            // The begin marker holds the batch's checksum, calculated from the checksums of its records
+            int[] recordChecksums = recordChecksums(records, entries);
+            int batchChecksum = batchChecksum(checksum, recordChecksums);
+
+            // Markers reuse the recordIds of the batch's first and last record
+            DiskJournalEntry<V> begin = prepareBatchBegin(dataSize, records.size(), batchChecksum);
+            DiskJournalEntry<V> commit = prepareBatchCommit();
+
+            List<DiskJournalRecord<V>> framedRecords = new ArrayList<>(records.size() + 2);
+            framedRecords.add(new DiskJournalRecord<V>(begin, records.get(0).getRecordId()));
+            framedRecords.addAll(records);
+            framedRecords.add(new DiskJournalRecord<V>(commit, records.get(records.size() - 1).getRecordId()));
+
+            List<DiskJournalEntry<V>> framedEntries = new ArrayList<>(entries.size() + 2);
+            framedEntries.add(begin);
+            framedEntries.addAll(entries);
+            framedEntries.add(commit);
+
+            int[] checksums = new int[framedRecords.size()];
+            System.arraycopy(recordChecksums, 0, checksums, 1, recordChecksums.length);
+            checksums[0] = entryChecksum(framedRecords.get(0), begin);
+            checksums[checksums.length - 1] = entryChecksum(framedRecords.get(checksums.length - 1), commit);
+
+            long start = getPosition();
+            try {
+                writeRecords(framedRecords, framedEntries, checksums, length);
+            } catch (IOException | RuntimeException e) {
+                abortBatch(start, length, dataSize, records.get(0).getRecordId());
+                throw e;
+            }
+            afterWrite(length);
+            trackRecords(records);
+            index.add(records.get(0).getRecordId(), start);
+
+            return new Tuple<>(DiskJournalAppendResult.APPEND_SUCCESSFUL, new ArrayList<JournalRecord<V>>(records));
+
+        } finally {
+            appendLock.unlock();
+            LOGGER.trace("DiskJournalFile::appendRecordBatch took {}ns", (System.nanoTime() - nanoSeconds));
+        }
+    }
+
+    Tuple<DiskJournalAppendResult, List<JournalRecord<V>>> appendRecordGroup(List<DiskJournalEntry<V>> entries)
+            throws IOException {
+
+        long nanoSeconds = System.nanoTime();
+
+        try {
+            appendLock.lock();
+
+            // Find the longest prefix of the group that still fits into this journal file
+            DiskJournalAppendResult result = DiskJournalAppendResult.APPEND_SUCCESSFUL;
+            long position = getPosition();
+            int dataSize = 0;
+            int count = 0;
+            for (DiskJournalEntry<V> entry : entries) {
+                int length = entry.cachedData.length + DiskJournal.JOURNAL_RECORD_HEADER_SIZE;
+                if (length > header.getMaxLogFileSize() - header.getFirstDataOffset()) {
+                    result = DiskJournalAppendResult.JOURNAL_FULL_OVERFLOW;
+                    break;
+                } else if (header.getMaxLogFileSize() < position + dataSize + length) {
+                    result = DiskJournalAppendResult.JOURNAL_OVERFLOW;
+                    break;
+                }
+                dataSize += length;
+                count++;
+            }
+
+            List<DiskJournalRecord<V>> records = new ArrayList<>(count);
+            if (count > 0) {
+                List<DiskJournalEntry<V>> group = entries.subList(0, count);
+                for (DiskJournalEntry<V> entry : group) {
                     long recordId = journal.getRecordIdGenerator().nextRecordId();
-                    DiskJournalRecord<V> record = new DiskJournalRecord<V>(entry, recordId);
-                    prepareBulkRecord(record, entry.cachedData, out);
-                    records.add(record);
+                    records.add(new DiskJournalRecord<V>(entry, recordId));
                 }
 
-                raf.write(data);
+                // A single write means a single sync for the whole group
+                writeRecords(records, group, recordChecksums(records, group), dataSize);
+                afterWrite(dataSize);
+                trackRecords(records);
+                index.add(records.get(0).getRecordId(), position);
+            }
+            return new Tuple<>(result, new ArrayList<>(records));
+
+        } finally {
+            appendLock.unlock();
+            LOGGER.trace("DiskJournalFile::appendRecordGroup took {}ns", (System.nanoTime() - nanoSeconds));
+        }
+    }
+
+    /**
+     * Serializes the entry straight into the write buffer of the journal file (see {@link #acquireRecordBuffer(int)}),
+     * without an intermediate array.
+     *
+     * @param entry  the entry to append
+     * @param writer the writer to serialize the entry
+     * @return the append result or null if the entry did not fit into the write buffer and has to be appended the
+     * regular way
+     * @throws IOException if writing to the underlying file failed
+     */
+    Tuple<DiskJournalAppendResult, JournalRecord<V>> appendRecordDirect(DiskJournalEntry<V> entry,
+                                                                        JournalEntryBufferWriter<V> writer)
+            throws IOException {
+
+        long nanoSeconds = System.nanoTime();
+
+        try {
+            appendLock.lock();
+
+            // A single record never exceeds 2GB, even inside larger journal files
+            int available = (int) Math.min(Integer.MAX_VALUE, header.getMaxLogFileSize() - getPosition());
+            if (available < DiskJournal.JOURNAL_RECORD_HEADER_SIZE) {
+                return new Tuple<>(DiskJournalAppendResult.JOURNAL_OVERFLOW, null);
+            }
+
+            // Prevent serialization attempts that are already known to fail
+            int estimatedLength = -1;
+            if (writer.isRecordSizeEstimateable()) {
+                estimatedLength = writer.estimateRecordSize(entry) + DiskJournal.JOURNAL_RECORD_HEADER_SIZE;
+                if (estimatedLength > available) {
+                    boolean fitsEmptyFile = estimatedLength <= header.getMaxLogFileSize() - header.getFirstDataOffset();
+                    if (!fitsEmptyFile || getPosition() == header.getFirstDataOffset()) {
+                        return null;
+                    }
+                    return new Tuple<>(DiskJournalAppendResult.JOURNAL_OVERFLOW, null);
+                }
+            }
+
+            ByteBuffer target = acquireRecordBuffer(available);
+            boolean written = false;
+            try {
+                int start = target.position();
+                if (estimatedLength > target.limit() - start) {
+                    // Larger than the write buffer
+                    return null;
+                }
+                ByteBuffer data = target.duplicate();
+                data.limit(target.limit() - RECORD_FRAME_TRAILER_SIZE);
+                data.position(start + RECORD_FRAME_HEADER_SIZE);
+                data = data.slice();
+
+                try {
+                    writer.writeJournalEntry(entry, data);
+                } catch (BufferOverflowException e) {
+                    if (target.limit() - start == available && getPosition() > header.getFirstDataOffset()) {
+                        // Limited by the journal file itself, retry in the next journal file
+                        return new Tuple<>(DiskJournalAppendResult.JOURNAL_OVERFLOW, null);
+                    }
+                    // Limited by the write buffer or too large for any journal file
+                    return null;
+                }
+
+                int recordLength = data.position() + DiskJournal.JOURNAL_RECORD_HEADER_SIZE;
+                long recordId = journal.getRecordIdGenerator().nextRecordId();
+                byte flags = DiskJournal.JOURNAL_RECORD_FLAGS_NONE;
+
+                data.flip();
+                int crc = recordChecksum(checksum, recordId, entry.getType(), flags, data);
+
+                target.position(start);
+                putRecordHeader(target, recordLength, recordId, entry.getType(), flags);
+                target.position(start + recordLength - RECORD_FRAME_TRAILER_SIZE);
+                putRecordTrailer(target, crc, recordLength);
+
+                long position = getPosition();
+                writeRecordBuffer(target, recordLength);
+                written = true;
+
+                afterWrite(recordLength);
+                trackRecordId(recordId);
+                index.add(recordId, position);
+
+                return new Tuple<>(DiskJournalAppendResult.APPEND_SUCCESSFUL, new DiskJournalRecord<V>(entry, recordId));
+
+            } finally {
+                releaseRecordBuffer(target, written);
+            }
+
+        } finally {
+            appendLock.unlock();
+            LOGGER.trace("DiskJournalFile::appendRecordDirect took {}ns", (System.nanoTime() - nanoSeconds));
+        }
+    }
+
+    /**
+     * Appends a record block built by {@link DiskJournalIOUtils#prepareRecordBlock(List, List,
+     * com.noctarius.replikate.spi.JournalCompressionCodec)}. The recordIds of the block's records are already assigned.
+     */
+    Tuple<DiskJournalAppendResult, List<JournalRecord<V>>> appendRecordBlock(List<DiskJournalRecord<V>> records,
+                                                                            DiskJournalEntry<V> block)
+            throws IOException {
+
+        long nanoSeconds = System.nanoTime();
+
+        try {
+            appendLock.lock();
+
+            int length = block.cachedData.length + DiskJournal.JOURNAL_RECORD_HEADER_SIZE;
+            if (length > header.getMaxLogFileSize() - header.getFirstDataOffset()) {
+                return new Tuple<>(DiskJournalAppendResult.JOURNAL_FULL_OVERFLOW, null);
+            } else if (header.getMaxLogFileSize() < getPosition() + length) {
+                return new Tuple<>(DiskJournalAppendResult.JOURNAL_OVERFLOW, null);
+            }
+
+            // The block is framed like a single record using the first recordId
+            DiskJournalRecord<V> blockRecord = new DiskJournalRecord<V>(block, records.get(0).getRecordId());
+            List<DiskJournalRecord<V>> blockRecords = Collections.singletonList(blockRecord);
+            List<DiskJournalEntry<V>> blockEntries = Collections.singletonList(block);
+            long position = getPosition();
+            writeRecords(blockRecords, blockEntries, recordChecksums(blockRecords, blockEntries), length);
+            afterWrite(length);
+            trackRecords(records);
+            index.add(blockRecord.getRecordId(), position);
+
+            return new Tuple<>(DiskJournalAppendResult.APPEND_SUCCESSFUL, new ArrayList<JournalRecord<V>>(records));
+
+        } finally {
+            appendLock.unlock();
+            LOGGER.trace("DiskJournalFile::appendRecordBlock took {}ns", (System.nanoTime() - nanoSeconds));
+        }
+    }
+
+    /**
+     * Appends a fragment built by {@link DiskJournalIOUtils#prepareRecordFragment(DiskJournalEntry, byte, int, int)},
+     * the recordId of the fragmented record is already assigned.
+     */
+    DiskJournalAppendResult appendRecordFragment(long recordId, DiskJournalEntry<V> fragment)
+            throws IOException {
+
+        long nanoSeconds = System.nanoTime();
+
+        try {
+            appendLock.lock();
+
+            int length = fragment.cachedData.length + DiskJournal.JOURNAL_RECORD_HEADER_SIZE;
+            if (header.getMaxLogFileSize() < getPosition() + length) {
+                return DiskJournalAppendResult.JOURNAL_OVERFLOW;
             }
-            return new Tuple<>(DiskJournalAppendResult.APPEND_SUCCESSFUL, records);
+
+            List<DiskJournalRecord<V>> records = Collections.singletonList(new DiskJournalRecord<V>(fragment, recordId));
+            List<DiskJournalEntry<V>> entries = Collections.singletonList(fragment);
+            long position = getPosition();
+            writeRecords(records, entries, recordChecksums(records, entries), length);
+            afterWrite(length);
+            trackRecordId(recordId);
+            index.add(recordId, position);
+
+            return DiskJournalAppendResult.APPEND_SUCCESSFUL;
 
         } finally {
             appendLock.unlock();
-            LOGGER.trace("DiskJournalFile::appendRecords took {}ns", (System.nanoTime() - nanoSeconds));
+            LOGGER.trace("DiskJournalFile::appendRecordFragment took {}ns", (System.nanoTime() - nanoSeconds));
         }
     }
 
     void close()
             throws IOException {
 
-        raf.close();
+        try {
+            appendLock.lock();
+            if (closed) {
+                return;
+            }
+            if (unsyncedBytes > 0) {
+                force();
+                unsyncedBytes = 0;
+            }
+            closed = true;
+            closeFile();
+            writeIndex();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Syncs outstanding writes if there are any. Used to implement time based sync modes.
+     */
+    void sync()
+            throws IOException {
+
+        try {
+            appendLock.lock();
+            if (unsyncedBytes > 0 && !closed) {
+                force();
+                unsyncedBytes = 0;
+            }
+            lastSyncNanos = System.nanoTime();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Remembers that the record with the given recordId is stored in this journal file. Records are expected to be
+     * tracked in ascending recordId order, the range might already be known from the journal file's index though.
+     *
+     * @param recordId the recordId of the stored record
+     */
+    void trackRecordId(long recordId) {
+        if (firstRecordId == -1) {
+            firstRecordId = recordId;
+        }
+        if (recordId > lastRecordId) {
+            lastRecordId = recordId;
+        }
+    }
+
+    /**
+     * @return the lowest recordId stored in this journal file or -1 if no record is stored
+     */
+    long getFirstRecordId() {
+        return firstRecordId;
+    }
+
+    /**
+     * @return the highest recordId stored in this journal file or -1 if no record is stored
+     */
+    long getLastRecordId() {
+        return lastRecordId;
+    }
+
+    /**
+     * @return the position up to which records are completely written, journal files not written by this instance are
+     * considered completely written
+     */
+    long getWrittenPosition() {
+        return writtenPosition;
+    }
+
+    boolean isRemoved() {
+        return removed;
+    }
+
+    void markRemoved() {
+        removed = true;
+    }
+
+    DiskJournalSegmentIndex getIndex() {
+        return sealedIndex;
+    }
+
+    void setIndex(DiskJournalSegmentIndex index) {
+        this.sealedIndex = index;
     }
 
     DiskJournalFileHeader getHeader() {
@@ -158,16 +527,160 @@ class DiskJournalFile<V>
         return header.getLogNumber();
     }
 
-    private int getPosition() {
+    DiskJournal<V> getJournal() {
+        return journal;
+    }
+
+    /**
+     * Writes the given records, backed by the given entries, at the current position of the journal file. All records
+     * are known to fit into the remaining file.
+     *
+     * @param records   the records to write
+     * @param entries   the entries (and their serialized data) of the records
+     * @param checksums the checksums of the records
+     * @param dataSize  the overall size of all framed records
+     * @throws IOException if writing to the underlying file failed
+     */
+    abstract void writeRecords(List<DiskJournalRecord<V>> records, List<DiskJournalEntry<V>> entries, int[] checksums,
+                               int dataSize)
+            throws IOException;
+
+    /**
+     * Moves the write position of the journal file.
+     *
+     * @param position the new write position
+     * @throws IOException if the underlying file could not be repositioned
+     */
+    abstract void seek(long position)
+            throws IOException;
+
+    /**
+     * Provides a buffer a single record is framed into at the buffer's position, the record may not exceed the limit.
+     *
+     * @param maxRecordLength the maximum record length fitting into the journal file
+     * @return the buffer to frame the record into, its limit might be lower than requested
+     * @throws IOException if the underlying file could not be prepared for the record
+     */
+    abstract ByteBuffer acquireRecordBuffer(int maxRecordLength)
+            throws IOException;
+
+    /**
+     * Writes the record framed into a buffer from {@link #acquireRecordBuffer(int)} to the journal file.
+     *
+     * @param buffer       the buffer holding the record
+     * @param recordLength the length of the framed record
+     * @throws IOException if writing to the underlying file failed
+     */
+    abstract void writeRecordBuffer(ByteBuffer buffer, int recordLength)
+            throws IOException;
+
+    abstract void releaseRecordBuffer(ByteBuffer buffer, boolean written);
+
+    Checksum getChecksum() {
+        return checksum;
+    }
+
+    abstract void force()
+            throws IOException;
+
+    abstract void closeFile()
+            throws IOException;
+
+    abstract long getPosition();
+
+    /**
+     * @return true if the file is not synced by the underlying file mode itself
+     */
+    abstract boolean requiresExplicitSync();
+
+    static DiskJournalFileHeader buildHeader(long maxLogFileSize, byte type, long logNumber) {
+        return new DiskJournalFileHeader(Journal.JOURNAL_VERSION, maxLogFileSize, logNumber, type);
+    }
+
+    private int[] recordChecksums(List<DiskJournalRecord<V>> records, List<DiskJournalEntry<V>> entries) {
+        int[] checksums = new int[records.size()];
+        for (int i = 0; i < checksums.length; i++) {
+            checksums[i] = entryChecksum(records.get(i), entries.get(i));
+        }
+        return checksums;
+    }
+
+    private int entryChecksum(DiskJournalRecord<V> record, DiskJournalEntry<V> entry) {
+        return recordChecksum(checksum, record.getRecordId(), record.getType(), entry.flags,
+                entry.cachedData);
+    }
+
+    /**
+     * Overwrites the begin marker of a batch that failed to be written with an aborted one, replay skips the batch's
+     * region therefore. Later records are appended behind that region, if the batch cannot be aborted nothing is
+     * appended to this journal file anymore.
+     */
+    private void abortBatch(long start, int length, int dataSize, long recordId) {
         try {
-            return (int) raf.getFilePointer();
+            DiskJournalEntry<V> abort = prepareBatchBegin(dataSize, DiskJournal.JOURNAL_BATCH_ABORTED, 0);
+            List<DiskJournalRecord<V>> records = Collections.singletonList(new DiskJournalRecord<V>(abort, recordId));
+            List<DiskJournalEntry<V>> entries = Collections.singletonList(abort);
+
+            seek(start);
+            writeRecords(records, entries, recordChecksums(records, entries), DiskJournal.JOURNAL_BATCH_BEGIN_SIZE);
+            seek(start + length);
+
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to abort batch in journal file {}, closing it", fileName, e);
+            closed = true;
+            try {
+                closeFile();
+            } catch (IOException ignore) {
+                // Already failing, nothing more to do
+            }
+        }
+    }
+
+    /**
+     * Seals the index of the written records, the records themselves are already on disk at this point. Failing to write
+     * the index is not fatal, it is rebuilt on the next replay.
+     */
+    private void writeIndex() {
+        if (index == null || lastRecordId == -1) {
+            return;
+        }
+
+        try {
+            index.seal(firstRecordId, lastRecordId);
+            sealedIndex = index;
+            DiskJournalIOUtils.writeIndex(journal.resolveIndexFile(getLogNumber()), getLogNumber(), index);
         } catch (IOException e) {
-            return -1;
+            LOGGER.warn("Failed to write index of journal file {}", fileName, e);
         }
     }
 
-    private DiskJournalFileHeader buildHeader(int maxLogFileSize, byte type, long logNumber) {
-        return new DiskJournalFileHeader(Journal.JOURNAL_VERSION, maxLogFileSize, logNumber, type);
+    private void trackRecords(List<DiskJournalRecord<V>> records) {
+        for (DiskJournalRecord<V> record : records) {
+            trackRecordId(record.getRecordId());
+        }
+    }
+
+    private void afterWrite(int bytes)
+            throws IOException {
+
+        DiskJournalSyncMode syncMode = journal.getSyncMode();
+        if (syncMode.isSyncOnWrite()) {
+            if (requiresExplicitSync()) {
+                force();
+            }
+            writtenPosition = getPosition();
+            return;
+        }
+
+        unsyncedBytes += bytes;
+        if (syncMode == DiskJournalSyncMode.SyncBytes && unsyncedBytes >= journal.getSyncBytes()) {
+            sync();
+
+        } else if (syncMode == DiskJournalSyncMode.SyncInterval
+                && System.nanoTime() - lastSyncNanos >= TimeUnit.MILLISECONDS.toNanos(journal.getSyncIntervalMillis())) {
+            sync();
+        }
+        writtenPosition = getPosition();
     }
 
 }
@@ -23,16 +23,16 @@ class DiskJournalFileHeader {
     static final byte[] MAGIC_NUMBER = {(byte) 0xFE, (byte) 0xEE, (byte) 0xEE, (byte) 0xEF};
 
     private final int firstDataOffset;
-    private final int maxLogFileSize;
+    private final long maxLogFileSize;
     private final long logFileNumber;
     private final int version;
     private final byte type;
 
-    DiskJournalFileHeader(int version, int maxLogFileSize, long logFileNumber, byte type) {
+    DiskJournalFileHeader(int version, long maxLogFileSize, long logFileNumber, byte type) {
         this(version, maxLogFileSize, logFileNumber, type, DiskJournal.JOURNAL_FILE_HEADER_SIZE);
     }
 
-    DiskJournalFileHeader(int version, int maxLogFileSize, long logFileNumber, byte type, int firstDataOffset) {
+    DiskJournalFileHeader(int version, long maxLogFileSize, long logFileNumber, byte type, int firstDataOffset) {
         this.version = version;
         this.maxLogFileSize = maxLogFileSize;
         this.logFileNumber = logFileNumber;
@@ -44,7 +44,7 @@ class DiskJournalFileHeader {
         return version;
     }
 
-    int getMaxLogFileSize() {
+    long getMaxLogFileSize() {
         return maxLogFileSize;
     }
 
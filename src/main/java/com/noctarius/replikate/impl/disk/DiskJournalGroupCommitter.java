@@ -0,0 +1,203 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.exceptions.SynchronousJournalException;
+import com.noctarius.replikate.spi.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalesces concurrently appended journal entries into commit groups. Every group is written by a single
+ * {@link DiskJournalFile} write call which means all entries of the group share one disk sync.
+ */
+class DiskJournalGroupCommitter<V>
+        implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiskJournalGroupCommitter.class);
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final BlockingQueue<DiskJournalCommitRequest<V>> queue;
+    private final DiskJournal<V> journal;
+    private final Thread thread;
+    private final int maxBytes;
+    private final long windowNanos;
+
+    // Submitters register before checking accepting, so shutdown can wait for all requests still being enqueued
+    private final AtomicInteger submitting = new AtomicInteger();
+
+    private volatile boolean accepting = true;
+    private volatile boolean running = true;
+
+    DiskJournalGroupCommitter(DiskJournal<V> journal, BlockingQueue<DiskJournalCommitRequest<V>> queue, int maxBytes,
+                              long windowMicros) {
+
+        this.journal = journal;
+        this.queue = queue;
+        this.maxBytes = maxBytes;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.thread = new NamedThreadFactory("RepliKate-GroupCommit-" + journal.getName()).newThread(this);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void submit(DiskJournalCommitRequest<V> request) {
+        submitting.incrementAndGet();
+        try {
+            if (!accepting) {
+                throw new SynchronousJournalException("Group committer already shut down");
+            }
+            // Blocks (according to the wait strategy) while a bounded queue is full
+            queue.put(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SynchronousJournalException("Interrupted while enqueuing journal entry", e);
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    void shutdown() {
+        // Requests being enqueued right now are still accepted, the running committer thread frees up a full queue
+        accepting = false;
+        while (submitting.get() > 0) {
+            Thread.yield();
+        }
+
+        // The committer thread is never interrupted since that would close interruptible file channels
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Flush whatever was enqueued while shutting down, nothing can be enqueued anymore
+        List<DiskJournalCommitRequest<V>> group = new ArrayList<>();
+        queue.drainTo(group);
+        flush(group);
+    }
+
+    @Override
+    public void run() {
+        List<DiskJournalCommitRequest<V>> group = new ArrayList<>();
+        while (running) {
+            try {
+                DiskJournalCommitRequest<V> first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                collectGroup(first, group);
+                flush(group);
+
+            } catch (InterruptedException e) {
+                flush(group);
+                Thread.currentThread().interrupt();
+                break;
+
+            } catch (RuntimeException e) {
+                LOGGER.error("{}: Unexpected failure while group committing", journal.getName(), e);
+
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void flush(List<DiskJournalCommitRequest<V>> requests) {
+        try {
+            // Batches are never part of a commit group, they are written on their own
+            List<DiskJournalCommitRequest<V>> group = new ArrayList<>();
+            for (DiskJournalCommitRequest<V> request : requests) {
+                if (request.isBatch()) {
+                    if (!group.isEmpty()) {
+                        journal.flushEntries(group);
+                        group = new ArrayList<>();
+                    }
+                    journal.flushBatch((DiskJournalBatchCommitRequest<V>) request);
+                } else {
+                    group.add(request);
+                }
+            }
+
+            if (!group.isEmpty()) {
+                journal.flushEntries(group);
+            }
+
+        } finally {
+            // Requests left behind by an unexpected failure would block synchronous appenders forever
+            failUnfinished(requests);
+        }
+    }
+
+    private void failUnfinished(List<DiskJournalCommitRequest<V>> requests) {
+        SynchronousJournalException exception = null;
+        for (DiskJournalCommitRequest<V> request : requests) {
+            if (request.isDone()) {
+                continue;
+            }
+            if (exception == null) {
+                exception = new SynchronousJournalException("Failed to persist journal entry");
+            }
+            try {
+                journal.failRequest(request, exception);
+            } catch (RuntimeException e) {
+                LOGGER.warn("{}: Could not announce failed journal entry", journal.getName(), e);
+            }
+        }
+    }
+
+    private void collectGroup(DiskJournalCommitRequest<V> first, List<DiskJournalCommitRequest<V>> group)
+            throws InterruptedException {
+
+        group.add(first);
+        int bytes = first.getLength();
+        long deadline = System.nanoTime() + windowNanos;
+
+        while (bytes < maxBytes) {
+            DiskJournalCommitRequest<V> request = queue.poll();
+            if (request == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                request = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (request == null) {
+                    break;
+                }
+            }
+            group.add(request);
+            bytes += request.getLength();
+        }
+
+        LOGGER.trace("{}: Collected commit group of {} entries ({} bytes)", journal.getName(), group.size(), bytes);
+    }
+
+}
@@ -18,50 +18,266 @@
  */
 package com.noctarius.replikate.impl.disk;
 
-import com.noctarius.replikate.spi.JournalEntry;
-import com.noctarius.replikate.impl.util.ByteArrayBufferOutputStream;
-import com.noctarius.replikate.spi.JournalEntryReader;
+import com.noctarius.replikate.Journal;
+import com.noctarius.replikate.impl.util.Crc32c;
+import com.noctarius.replikate.spi.JournalCompressionCodec;
+import com.noctarius.replikate.spi.JournalEntryBufferWriter;
 import com.noctarius.replikate.spi.JournalEntryWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Checksum;
+
+import static com.noctarius.replikate.impl.util.Crc32c.updateInt;
+import static com.noctarius.replikate.impl.util.Crc32c.updateLong;
 
 enum DiskJournalIOUtils {
     ;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DiskJournalIOUtils.class);
 
-    static DiskJournalFileHeader createJournal(RandomAccessFile raf, DiskJournalFileHeader header)
+    private static final int PREALLOCATION_CHUNK_SIZE = 64 * 1024;
+
+    // magic (4) + version (4) + logNumber (8) + firstRecordId (8) + lastRecordId (8) + count (4)
+    private static final int INDEX_HEADER_SIZE = 36;
+    // recordId (8) + position (8)
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    private static final int SERIALIZATION_BUFFER_SIZE = 4 * 1024;
+    private static final int MAX_SERIALIZATION_BUFFER_SIZE = 1024 * 1024;
+
+    // Reused per thread, serialized entries are copied out exactly sized
+    private static final ThreadLocal<ByteBuffer> SERIALIZATION_BUFFER = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(SERIALIZATION_BUFFER_SIZE);
+        }
+    };
+
+    private static final ThreadLocal<SerializationStream> SERIALIZATION_STREAM = new ThreadLocal<SerializationStream>() {
+        @Override
+        protected SerializationStream initialValue() {
+            return new SerializationStream();
+        }
+    };
+
+    // Shared read-only source of zeros, only ever used through duplicates
+    private static final ByteBuffer ZERO_BUFFER = ByteBuffer.allocateDirect(PREALLOCATION_CHUNK_SIZE).asReadOnlyBuffer();
+
+    static DiskJournalFileHeader createJournal(Path file, DiskJournalFileHeader header, DiskJournalPreallocation preallocation)
             throws IOException {
 
         long nanoSeconds = System.nanoTime();
-        byte[] allocator = new byte[header.getMaxLogFileSize()];
-        Arrays.fill(allocator, (byte) 0);
 
-        try (ByteArrayBufferOutputStream buffer = new ByteArrayBufferOutputStream(allocator);
-             DataOutputStream stream = new DataOutputStream(buffer)) {
-            stream.write(DiskJournalFileHeader.MAGIC_NUMBER);
-            stream.writeInt(header.getVersion());
-            stream.writeInt(header.getMaxLogFileSize());
-            stream.writeLong(header.getLogNumber());
-            stream.write(header.getType());
-            stream.writeInt(header.getFirstDataOffset());
-        }
+        // Preallocation is done without any sync option, the whole file is forced exactly once at the end
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            writeHeader(channel, header);
 
-        raf.write(allocator);
-        raf.seek(DiskJournal.JOURNAL_FILE_HEADER_SIZE);
+            if (preallocation == DiskJournalPreallocation.ZeroFill) {
+                zeroFill(channel, DiskJournal.JOURNAL_FILE_HEADER_SIZE, header.getMaxLogFileSize());
+
+            } else if (channel.size() < header.getMaxLogFileSize()) {
+                // Writing the last byte extends the file without allocating the blocks in between
+                writeFully(channel, ByteBuffer.allocate(1), header.getMaxLogFileSize() - 1);
+            }
+
+            channel.force(true);
+        }
 
         LOGGER.trace("DiskJournalIOUtils::createJournal took {}ns", (System.nanoTime() - nanoSeconds));
 
         return header;
     }
 
+    static DiskJournalFileHeader recycleJournal(Path file, DiskJournalFileHeader header)
+            throws IOException {
+
+        long nanoSeconds = System.nanoTime();
+
+        // The file is already allocated and zeroed, only the header has to be replaced
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            writeHeader(channel, header);
+            channel.force(true);
+        }
+
+        LOGGER.trace("DiskJournalIOUtils::recycleJournal took {}ns", (System.nanoTime() - nanoSeconds));
+
+        return header;
+    }
+
+    static void zeroJournal(Path file, long from, long to)
+            throws IOException {
+
+        long nanoSeconds = System.nanoTime();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            zeroFill(channel, from, Math.min(to, channel.size()));
+            channel.force(false);
+        }
+
+        LOGGER.trace("DiskJournalIOUtils::zeroJournal took {}ns", (System.nanoTime() - nanoSeconds));
+    }
+
+    static void writeCheckpoint(Path journalPath, long recordId)
+            throws IOException {
+
+        long nanoSeconds = System.nanoTime();
+
+        // Written to a temporary file first and atomically moved over the old checkpoint to never leave a torn one
+        Path checkpoint = journalPath.resolve(DiskJournal.CHECKPOINT_FILE_NAME);
+        Path temporary = journalPath.resolve(DiskJournal.CHECKPOINT_FILE_NAME + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            ByteBuffer buffer = ByteBuffer.allocate(DiskJournal.CHECKPOINT_FILE_SIZE);
+            buffer.put(DiskJournalFileHeader.MAGIC_NUMBER);
+            buffer.putInt(Journal.JOURNAL_VERSION);
+            buffer.putLong(recordId);
+            buffer.flip();
+            writeFully(channel, buffer, 0);
+            channel.force(true);
+        }
+        Files.move(temporary, checkpoint, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        // The rename has to be durable before covered journal files are removed, otherwise a crash might bring back
+        // the old checkpoint without the journal files it refers to
+        syncDirectory(journalPath);
+
+        LOGGER.trace("DiskJournalIOUtils::writeCheckpoint took {}ns", (System.nanoTime() - nanoSeconds));
+    }
+
+    static void syncDirectory(Path directory)
+            throws IOException {
+
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            // Directories cannot be opened on some platforms (Windows), the rename cannot be synced explicitly there
+            LOGGER.trace("Directory {} cannot be synced", directory, e);
+        }
+    }
+
+    static long readCheckpoint(Path journalPath)
+            throws IOException {
+
+        Path checkpoint = journalPath.resolve(DiskJournal.CHECKPOINT_FILE_NAME);
+        if (!Files.exists(checkpoint)) {
+            return -1;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(checkpoint.toFile(), "r")) {
+            byte[] magicNumber = new byte[4];
+            raf.readFully(magicNumber);
+            if (!Arrays.equals(magicNumber, DiskJournalFileHeader.MAGIC_NUMBER)) {
+                throw new IllegalStateException("Given file no legal checkpoint");
+            }
+
+            // Version is not yet used
+            raf.readInt();
+            return raf.readLong();
+        }
+    }
+
+    static void writeIndex(Path indexFile, long logNumber, DiskJournalSegmentIndex index)
+            throws IOException {
+
+        long nanoSeconds = System.nanoTime();
+
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_HEADER_SIZE + index.size() * INDEX_ENTRY_SIZE + 4);
+        buffer.put(DiskJournalFileHeader.MAGIC_NUMBER);
+        buffer.putInt(Journal.JOURNAL_VERSION);
+        buffer.putLong(logNumber);
+        buffer.putLong(index.getFirstRecordId());
+        buffer.putLong(index.getLastRecordId());
+        buffer.putInt(index.size());
+        for (int i = 0; i < index.size(); i++) {
+            buffer.putLong(index.getRecordId(i));
+            buffer.putLong(index.getPosition(i));
+        }
+        buffer.putInt(indexChecksum(buffer.array(), buffer.position()));
+        buffer.flip();
+
+        // The index can always be rebuilt, so a torn one is only prevented but never forced to disk
+        Files.createDirectories(indexFile.getParent());
+        Path temporary = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            writeFully(channel, buffer, 0);
+        }
+        Files.move(temporary, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        LOGGER.trace("DiskJournalIOUtils::writeIndex took {}ns", (System.nanoTime() - nanoSeconds));
+    }
+
+    /**
+     * Reads the index of a journal file.
+     *
+     * @param indexFile the path of the index
+     * @param logNumber the logNumber of the indexed journal file
+     * @return the index or null if no index exists
+     * @throws IOException if the index is broken or does not belong to the journal file
+     */
+    static DiskJournalSegmentIndex readIndex(Path indexFile, long logNumber)
+            throws IOException {
+
+        if (!Files.exists(indexFile)) {
+            return null;
+        }
+
+        byte[] data = Files.readAllBytes(indexFile);
+        if (data.length < INDEX_HEADER_SIZE + 4) {
+            throw new EOFException("Index " + indexFile.getFileName() + " is too short");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        byte[] magicNumber = new byte[4];
+        buffer.get(magicNumber);
+        if (!Arrays.equals(magicNumber, DiskJournalFileHeader.MAGIC_NUMBER)) {
+            throw new IOException("Given file no legal index");
+        }
+
+        // Version is not yet used
+        buffer.getInt();
+        long indexedLogNumber = buffer.getLong();
+        long firstRecordId = buffer.getLong();
+        long lastRecordId = buffer.getLong();
+        int count = buffer.getInt();
+        if (count < 0 || data.length != INDEX_HEADER_SIZE + count * INDEX_ENTRY_SIZE + 4) {
+            throw new IOException("Index " + indexFile.getFileName() + " is incomplete");
+        }
+        if (buffer.getInt(data.length - 4) != indexChecksum(data, data.length - 4)) {
+            throw new IOException("Index " + indexFile.getFileName() + " is corrupted");
+        }
+        if (indexedLogNumber != logNumber) {
+            throw new IOException("Index " + indexFile.getFileName() + " belongs to logNumber " + indexedLogNumber);
+        }
+
+        long[] recordIds = new long[count];
+        long[] positions = new long[count];
+        for (int i = 0; i < count; i++) {
+            recordIds[i] = buffer.getLong();
+            positions[i] = buffer.getLong();
+        }
+        return new DiskJournalSegmentIndex(firstRecordId, lastRecordId, recordIds, positions);
+    }
+
     static DiskJournalFileHeader readHeader(RandomAccessFile raf)
             throws IOException {
 
@@ -73,14 +289,31 @@ enum DiskJournalIOUtils {
         }
 
         int version = raf.readInt();
-        int maxLogFileSize = raf.readInt();
+        long maxLogFileSize = version > DiskJournal.LEGACY_JOURNAL_FILE_HEADER_VERSION ? raf.readLong() : raf.readInt();
         long logFileNumber = raf.readLong();
         byte type = raf.readByte();
         int firstDataOffset = raf.readInt();
         return new DiskJournalFileHeader(version, maxLogFileSize, logFileNumber, type, firstDataOffset);
     }
 
-    static <V> DiskJournalEntry<V> prepareJournalEntry(V entry, byte type, JournalEntryWriter<V> writer)
+    static DiskJournalFileHeader readHeader(ByteBuffer buffer) {
+        // Read header and look for expected values
+        byte[] magicNumber = new byte[4];
+        buffer.get(magicNumber);
+        if (!Arrays.equals(magicNumber, DiskJournalFileHeader.MAGIC_NUMBER)) {
+            throw new IllegalStateException("Given file no legal journal");
+        }
+
+        int version = buffer.getInt();
+        long maxLogFileSize = version > DiskJournal.LEGACY_JOURNAL_FILE_HEADER_VERSION ? buffer.getLong() : buffer.getInt();
+        long logFileNumber = buffer.getLong();
+        byte type = buffer.get();
+        int firstDataOffset = buffer.getInt();
+        return new DiskJournalFileHeader(version, maxLogFileSize, logFileNumber, type, firstDataOffset);
+    }
+
+    static <V> DiskJournalEntry<V> prepareJournalEntry(V entry, byte type, JournalEntryWriter<V> writer,
+                                                       JournalCompressionCodec codec)
             throws IOException {
 
         long nanoSeconds = 0;
@@ -90,11 +323,18 @@ enum DiskJournalIOUtils {
 
         DiskJournalEntry<V> journalEntry = buildDiskJournal(entry, type);
         if (journalEntry.cachedData == null) {
-            try (ByteArrayOutputStream out = new ByteArrayOutputStream(100);
-                 DataOutputStream stream = new DataOutputStream(out)) {
-
-                writer.writeJournalEntry(journalEntry, stream);
-                journalEntry.cachedData = out.toByteArray();
+            if (writer instanceof JournalEntryBufferWriter) {
+                byte[] data = serialize(journalEntry, (JournalEntryBufferWriter<V>) writer);
+                journalEntry.cachedData = compress(journalEntry, data, codec);
+
+            } else {
+                SerializationStream stream = SERIALIZATION_STREAM.get();
+                try {
+                    writer.writeJournalEntry(journalEntry, stream.prepare(estimateRecordSize(journalEntry, writer)));
+                    journalEntry.cachedData = compress(journalEntry, stream.toByteArray(), codec);
+                } finally {
+                    stream.release();
+                }
             }
 
             if (LOGGER.isTraceEnabled()) {
@@ -105,54 +345,267 @@ enum DiskJournalIOUtils {
         return journalEntry;
     }
 
+    private static <V> byte[] serialize(DiskJournalEntry<V> journalEntry, JournalEntryBufferWriter<V> writer)
+            throws IOException {
+
+        ByteBuffer buffer = SERIALIZATION_BUFFER.get();
+        int estimate = estimateRecordSize(journalEntry, writer);
+        if (estimate > buffer.capacity()) {
+            buffer = ByteBuffer.allocate(estimate);
+        }
+
+        while (true) {
+            buffer.clear();
+            try {
+                writer.writeJournalEntry(journalEntry, buffer);
+                break;
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+
+        // Very large buffers are not kept to not pin memory per thread
+        if (buffer.capacity() <= MAX_SERIALIZATION_BUFFER_SIZE) {
+            SERIALIZATION_BUFFER.set(buffer);
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static <V> int estimateRecordSize(DiskJournalEntry<V> journalEntry, JournalEntryWriter<V> writer) {
+        return writer.isRecordSizeEstimateable() ? writer.estimateRecordSize(journalEntry) : 0;
+    }
+
+    /**
+     * Builds a single entry holding all given records. The block starts with the last recordId and the number of
+     * records, followed by recordId, type, length and data of every record. Everything after the block header is
+     * compressed as a whole if that saves space.
+     */
+    static <V> DiskJournalEntry<V> prepareRecordBlock(List<DiskJournalRecord<V>> records, List<DiskJournalEntry<V>> entries,
+                                                      JournalCompressionCodec codec)
+            throws IOException {
+
+        long nanoSeconds = System.nanoTime();
+
+        int length = 0;
+        for (DiskJournalEntry<V> entry : entries) {
+            length += DiskJournal.JOURNAL_RECORD_BLOCK_ENTRY_HEADER_SIZE + entry.cachedData.length;
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        for (int i = 0; i < records.size(); i++) {
+            DiskJournalRecord<V> record = records.get(i);
+            byte[] entryData = entries.get(i).cachedData;
+            payload.putLong(record.getRecordId());
+            payload.put(record.getType());
+            payload.putInt(entryData.length);
+            payload.put(entryData);
+        }
+
+        DiskJournalEntry<V> block = buildDiskJournal(null, (byte) 0);
+        byte[] data = compress(block, payload.array(), codec);
+        block.flags |= DiskJournal.JOURNAL_RECORD_FLAGS_BLOCK;
+
+        ByteBuffer buffer = ByteBuffer.allocate(DiskJournal.JOURNAL_RECORD_BLOCK_HEADER_SIZE + data.length);
+        buffer.putLong(records.get(records.size() - 1).getRecordId());
+        buffer.putInt(records.size());
+        buffer.put(data);
+        block.cachedData = buffer.array();
+
+        LOGGER.trace("DiskJournalIOUtils::prepareRecordBlock took {}ns", (System.nanoTime() - nanoSeconds));
+
+        return block;
+    }
+
+    /**
+     * Builds a fragment of a record that is too large for a single journal file. Fragments carry the record's type and
+     * compression codec, the position of their data inside the whole record's data and whether they are the first, a
+     * middle or the last fragment.
+     *
+     * @param entry  the fragmented entry with its serialized (and maybe compressed) data
+     * @param kind   the kind of fragment, {@link DiskJournal#JOURNAL_FRAGMENT_FIRST}, {@link
+     *               DiskJournal#JOURNAL_FRAGMENT_MIDDLE} or {@link DiskJournal#JOURNAL_FRAGMENT_LAST}
+     * @param offset the offset of the fragment's data
+     * @param length the length of the fragment's data
+     * @return the fragment entry
+     */
+    static <V> DiskJournalEntry<V> prepareRecordFragment(DiskJournalEntry<V> entry, byte kind, int offset, int length) {
+        byte[] data = entry.cachedData;
+
+        DiskJournalEntry<V> fragment = buildDiskJournal(null, entry.getType());
+        fragment.flags = (byte) (entry.flags | DiskJournal.JOURNAL_RECORD_FLAGS_FRAGMENT);
+
+        ByteBuffer buffer = ByteBuffer.allocate(DiskJournal.JOURNAL_RECORD_FRAGMENT_HEADER_SIZE + length);
+        buffer.put(kind).putInt(data.length).putInt(offset).put(data, offset, length);
+        fragment.cachedData = buffer.array();
+        return fragment;
+    }
+
+    /**
+     * Builds the begin marker of a batch, see {@link DiskJournalFile#appendRecordBatch(List, int)}.
+     *
+     * @param dataSize the size of the batch's framed records
+     * @param count    the number of records or {@link DiskJournal#JOURNAL_BATCH_ABORTED}
+     * @param checksum the batch's checksum, see {@link #batchChecksum(Checksum, int[])}
+     * @return the marker entry
+     */
+    static <V> DiskJournalEntry<V> prepareBatchBegin(int dataSize, int count, int checksum) {
+        DiskJournalEntry<V> marker = buildDiskJournal(null, (byte) 0);
+        marker.flags = DiskJournal.JOURNAL_RECORD_FLAGS_BATCH_BEGIN;
+        marker.cachedData = ByteBuffer.allocate(12).putInt(dataSize).putInt(count).putInt(checksum).array();
+        return marker;
+    }
+
+    static <V> DiskJournalEntry<V> prepareBatchCommit() {
+        DiskJournalEntry<V> marker = buildDiskJournal(null, (byte) 0);
+        marker.flags = DiskJournal.JOURNAL_RECORD_FLAGS_BATCH_COMMIT;
+        marker.cachedData = new byte[0];
+        return marker;
+    }
+
+    /**
+     * The checksum of a batch covers the checksums of its records, which makes it cheap to calculate on both sides.
+     *
+     * @param checksum        the checksum implementation to use
+     * @param recordChecksums the checksums of the batch's records in order
+     * @return the batch's checksum
+     */
+    static int batchChecksum(Checksum checksum, int[] recordChecksums) {
+        checksum.reset();
+        for (int recordChecksum : recordChecksums) {
+            updateInt(checksum, recordChecksum);
+        }
+        return (int) checksum.getValue();
+    }
+
+    private static <V> byte[] compress(DiskJournalEntry<V> journalEntry, byte[] data, JournalCompressionCodec codec)
+            throws IOException {
+
+        if (codec == null) {
+            return data;
+        }
+
+        // Only keep the compressed form if it actually saves space
+        byte[] compressed = codec.compress(data);
+        if (compressed.length >= data.length) {
+            return data;
+        }
+        journalEntry.flags = codec.getCodecId();
+        return compressed;
+    }
+
     private static <V> DiskJournalEntry<V> buildDiskJournal(V entry, byte type) {
         return new DiskJournalEntry<>(entry, type);
     }
 
-    static <V> void writeRecord(DiskJournalRecord<V> record, byte[] entryData, RandomAccessFile raf)
+    private static int indexChecksum(byte[] data, int length) {
+        Checksum checksum = Crc32c.newChecksum();
+        checksum.update(data, 0, length);
+        return (int) checksum.getValue();
+    }
+
+    private static void writeHeader(FileChannel channel, DiskJournalFileHeader header)
             throws IOException {
 
-        long nanoSeconds = 0;
-        if (LOGGER.isDebugEnabled()) {
-            nanoSeconds = System.nanoTime();
+        ByteBuffer buffer = ByteBuffer.allocate(DiskJournal.JOURNAL_FILE_HEADER_SIZE);
+        buffer.put(DiskJournalFileHeader.MAGIC_NUMBER);
+        buffer.putInt(header.getVersion());
+        buffer.putLong(header.getMaxLogFileSize());
+        buffer.putLong(header.getLogNumber());
+        buffer.put(header.getType());
+        buffer.putInt(header.getFirstDataOffset());
+        buffer.flip();
+        writeFully(channel, buffer, 0);
+    }
+
+    private static void zeroFill(FileChannel channel, long from, long to)
+            throws IOException {
+
+        long position = from;
+        while (position < to) {
+            ByteBuffer zeros = ZERO_BUFFER.duplicate();
+            zeros.limit((int) Math.min(zeros.capacity(), to - position));
+            writeFully(channel, zeros, position);
+            position += zeros.limit();
         }
+    }
 
-        int minSize = DiskJournal.JOURNAL_RECORD_HEADER_SIZE + entryData.length;
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream(minSize);
-             DataOutputStream stream = new DataOutputStream(out)) {
+    static void putRecordHeader(ByteBuffer buffer, int recordLength, long recordId, byte type, byte flags) {
+        buffer.putInt(recordLength);
+        buffer.putLong(recordId);
+        buffer.put(type);
+        buffer.put(flags);
+    }
 
-            int recordLength = DiskJournal.JOURNAL_RECORD_HEADER_SIZE + entryData.length;
+    static void putRecordTrailer(ByteBuffer buffer, int checksum, int recordLength) {
+        buffer.putInt(checksum);
+        buffer.putInt(recordLength);
+    }
 
-            stream.writeInt(recordLength);
-            stream.writeLong(record.getRecordId());
-            stream.writeByte(record.getType());
-            stream.write(entryData);
-            stream.writeInt(recordLength);
-            raf.write(out.toByteArray());
-        }
+    /**
+     * Calculates the CRC32C of a record, covering everything between the leading length and the checksum itself.
+     */
+    static int recordChecksum(Checksum checksum, long recordId, byte type, byte flags, byte[] data) {
+        checksum.reset();
+        updateLong(checksum, recordId);
+        checksum.update(type);
+        checksum.update(flags);
+        checksum.update(data, 0, data.length);
+        return (int) checksum.getValue();
+    }
 
-        LOGGER.trace("DiskJournalIOUtils::writeRecord took {}ns", (System.nanoTime() - nanoSeconds));
+    static int recordChecksum(Checksum checksum, long recordId, byte type, byte flags, ByteBuffer data) {
+        checksum.reset();
+        updateLong(checksum, recordId);
+        checksum.update(type);
+        checksum.update(flags);
+        Crc32c.update(checksum, data);
+        return (int) checksum.getValue();
     }
 
-    static <V> void prepareBulkRecord(DiskJournalRecord<V> record, byte[] entryData, OutputStream out)
+    static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
             throws IOException {
 
-        long nanoSeconds = 0;
-        if (LOGGER.isDebugEnabled()) {
-            nanoSeconds = System.nanoTime();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer[] buffers)
+            throws IOException {
+
+        ByteBuffer last = buffers[buffers.length - 1];
+        while (last.hasRemaining()) {
+            channel.write(buffers);
         }
+    }
+
+    /**
+     * Per thread serialization target of {@link JournalEntryWriter}s, presized using the writer's size estimate so the
+     * serialized entry is copied exactly once.
+     */
+    private static final class SerializationStream
+            extends ByteArrayOutputStream {
 
-        try (DataOutputStream stream = new DataOutputStream(out)) {
-            int recordLength = DiskJournal.JOURNAL_RECORD_HEADER_SIZE + entryData.length;
+        private final DataOutputStream dataOutput = new DataOutputStream(this);
 
-            stream.writeInt(recordLength);
-            stream.writeLong(record.getRecordId());
-            stream.writeByte(record.getType());
-            stream.write(entryData);
-            stream.writeInt(recordLength);
+        private SerializationStream() {
+            super(SERIALIZATION_BUFFER_SIZE);
         }
 
-        LOGGER.trace("DiskJournalIOUtils::prepareBulkRecord took {}ns", (System.nanoTime() - nanoSeconds));
+        private DataOutput prepare(int estimatedSize) {
+            reset();
+            if (buf.length < estimatedSize) {
+                buf = new byte[estimatedSize];
+            }
+            return dataOutput;
+        }
+
+        private void release() {
+            // Very large buffers are not kept to not pin memory per thread
+            if (buf.length > MAX_SERIALIZATION_BUFFER_SIZE) {
+                buf = new byte[SERIALIZATION_BUFFER_SIZE];
+            }
+        }
     }
 
 }
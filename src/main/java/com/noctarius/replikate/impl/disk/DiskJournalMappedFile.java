@@ -0,0 +1,164 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.putRecordHeader;
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.putRecordTrailer;
+
+/**
+ * Journal file implementation that maps the preallocated segment into memory. Appending a record is a plain memory copy
+ * into the mapped buffer, durability is achieved by forcing the mapped buffer depending on the configured
+ * {@link DiskJournalSyncMode}. Segments larger than a single mapping are mapped in windows, moving forward while
+ * appending.
+ */
+class DiskJournalMappedFile<V>
+        extends DiskJournalFile<V> {
+
+    static final long MAPPING_WINDOW_SIZE = 1L << 30;
+
+    // Records framed directly into the mapping should not fall back to the regular path just because of a window end
+    private static final int MIN_RECORD_WINDOW_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long windowSize;
+
+    private MappedByteBuffer buffer;
+    private long windowOffset;
+
+    DiskJournalMappedFile(DiskJournal<V> journal, File file, DiskJournalFileHeader header)
+            throws IOException {
+
+        this(journal, file, header, MAPPING_WINDOW_SIZE);
+    }
+
+    DiskJournalMappedFile(DiskJournal<V> journal, File file, DiskJournalFileHeader header, long windowSize)
+            throws IOException {
+
+        super(journal, file.getName(), header, true);
+        this.channel = FileChannel.open(file.toPath(), DiskJournalSyncMode.Buffered.getOpenOptions());
+        this.windowSize = windowSize;
+        map(header.getFirstDataOffset(), 0);
+    }
+
+    @Override
+    void writeRecords(List<DiskJournalRecord<V>> records, List<DiskJournalEntry<V>> entries, int[] checksums,
+                      int dataSize)
+            throws IOException {
+
+        ensureWindow(dataSize);
+        for (int i = 0; i < records.size(); i++) {
+            DiskJournalRecord<V> record = records.get(i);
+            byte[] entryData = entries.get(i).cachedData;
+            int recordLength = DiskJournal.JOURNAL_RECORD_HEADER_SIZE + entryData.length;
+            byte flags = entries.get(i).flags;
+
+            putRecordHeader(buffer, recordLength, record.getRecordId(), record.getType(), flags);
+            buffer.put(entryData);
+            putRecordTrailer(buffer, checksums[i], recordLength);
+        }
+    }
+
+    @Override
+    void seek(long position)
+            throws IOException {
+
+        if (position < windowOffset || position > windowOffset + buffer.limit()) {
+            map(position, 0);
+            return;
+        }
+        buffer.position((int) (position - windowOffset));
+    }
+
+    @Override
+    ByteBuffer acquireRecordBuffer(int maxRecordLength)
+            throws IOException {
+
+        // Records are framed straight into the mapped journal file
+        ensureWindow(Math.min(maxRecordLength, MIN_RECORD_WINDOW_SIZE));
+        ByteBuffer record = buffer.duplicate();
+        record.limit(buffer.position() + Math.min(maxRecordLength, buffer.remaining()));
+        return record;
+    }
+
+    @Override
+    void writeRecordBuffer(ByteBuffer record, int recordLength) {
+        buffer.position(buffer.position() + recordLength);
+    }
+
+    @Override
+    void releaseRecordBuffer(ByteBuffer record, boolean written) {
+        // Nothing to release. Leftovers of a failed serialization stay behind the end of data since the position is not
+        // advanced, the next record overwrites them. Their record header is never written, so readers reject them as
+        // incomplete or corrupted data and stop in front of them.
+    }
+
+    @Override
+    void force()
+            throws IOException {
+
+        // MappedByteBuffer::force only writes back dirty pages, therefore this is effectively a range force
+        buffer.force();
+    }
+
+    @Override
+    void closeFile()
+            throws IOException {
+
+        channel.close();
+    }
+
+    @Override
+    long getPosition() {
+        return windowOffset + buffer.position();
+    }
+
+    @Override
+    boolean requiresExplicitSync() {
+        return true;
+    }
+
+    private void ensureWindow(int length)
+            throws IOException {
+
+        if (buffer.remaining() < length && windowOffset + buffer.limit() < getHeader().getMaxLogFileSize()) {
+            map(getPosition(), length);
+        }
+    }
+
+    private void map(long position, int minLength)
+            throws IOException {
+
+        if (buffer != null) {
+            // Dirty pages of the previous window cannot be forced anymore once the window is dropped
+            buffer.force();
+        }
+
+        long length = Math.min(Math.max(windowSize, minLength), getHeader().getMaxLogFileSize() - position);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.min(length, Integer.MAX_VALUE));
+        windowOffset = position;
+    }
+
+}
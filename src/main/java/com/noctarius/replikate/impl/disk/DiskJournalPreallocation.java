@@ -0,0 +1,39 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+/**
+ * Defines how new journal files are extended to their maximum size. Either way the not yet written part of a journal file
+ * reads as zeros which is used to detect the end of data while replaying.
+ */
+public enum DiskJournalPreallocation {
+
+    /**
+     * The journal file is zero filled in chunks from a small, shared direct buffer. All filesystem blocks are allocated
+     * upfront so that appending does not need to allocate blocks or update file metadata (default).
+     */
+    ZeroFill,
+
+    /**
+     * The journal file is only extended to its maximum size, leaving a sparse file on filesystems supporting it. Creation is
+     * nearly free, blocks are allocated lazily while appending.
+     */
+    Sparse
+
+}
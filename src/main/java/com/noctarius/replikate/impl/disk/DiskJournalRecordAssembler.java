@@ -0,0 +1,113 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.spi.JournalCompressionCodec;
+import com.noctarius.replikate.spi.JournalEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reassembles records split into {@link DiskJournalRecordFragment}s. Fragments of the same record share the recordId and
+ * are written to journal files in ascending order, so they are always read in order as well. Any record in between
+ * means the fragmented record is incomplete.
+ */
+class DiskJournalRecordAssembler<V> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiskJournalRecordAssembler.class);
+
+    private final DiskJournal<V> journal;
+
+    // Fragments of the record currently being reassembled
+    private DiskJournalRecordFragment<V> firstFragment;
+    private byte[] assembly;
+    private int assembled;
+
+    DiskJournalRecordAssembler(DiskJournal<V> journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Collects the next fragment.
+     *
+     * @param fragment the next fragment
+     * @return the reassembled record or null if fragments are missing
+     * @throws IOException if the reassembled record could not be decompressed
+     */
+    DiskJournalRecord<V> assemble(DiskJournalRecordFragment<V> fragment)
+            throws IOException {
+
+        if (assembly == null || firstFragment.getRecordId() != fragment.getRecordId()) {
+            discard();
+            if (fragment.getKind() != DiskJournal.JOURNAL_FRAGMENT_FIRST) {
+                LOGGER.info("{}: Skipping fragment of incomplete record {}", journal.getName(), fragment.getRecordId());
+                return null;
+            }
+            firstFragment = fragment;
+            assembly = new byte[fragment.getRecordLength()];
+            assembled = 0;
+        }
+
+        byte[] data = fragment.getData();
+        if (fragment.getOffset() != assembled || data.length > assembly.length - assembled) {
+            discard();
+            return null;
+        }
+        System.arraycopy(data, 0, assembly, assembled, data.length);
+        assembled += data.length;
+
+        if (fragment.getKind() != DiskJournal.JOURNAL_FRAGMENT_LAST) {
+            return null;
+        }
+
+        DiskJournalRecordFragment<V> first = firstFragment;
+        ByteBuffer recordData = ByteBuffer.wrap(assembly);
+        boolean complete = assembled == assembly.length;
+        firstFragment = null;
+        assembly = null;
+
+        if (!complete) {
+            LOGGER.info("{}: Skipping incomplete record {}", journal.getName(), first.getRecordId());
+            return null;
+        }
+
+        if (first.getCodecId() != 0) {
+            JournalCompressionCodec codec = journal.resolveCompressionCodec(first.getCodecId());
+            recordData = ByteBuffer.wrap(codec.decompress(recordData));
+        }
+
+        JournalEntry<V> entry = journal.getReader().readJournalEntry(first.getRecordId(), first.getType(), recordData);
+        return new DiskJournalRecord<>(entry, first.getRecordId());
+    }
+
+    /**
+     * Drops the record currently being reassembled, called whenever a record that is no fragment is read.
+     */
+    void discard() {
+        if (assembly != null) {
+            LOGGER.info("{}: Skipping incomplete record {}", journal.getName(), firstFragment.getRecordId());
+            firstFragment = null;
+            assembly = null;
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+/**
+ * A fragment of a record that was too large for a single journal file, read by a {@link DiskJournalSegmentCursor}.
+ * Fragments are reassembled to the actual record by the {@link DiskJournalRecordAssembler}.
+ */
+class DiskJournalRecordFragment<V>
+        extends DiskJournalRecord<V> {
+
+    private final byte kind;
+    private final int codecId;
+    private final int recordLength;
+    private final int offset;
+    private final byte[] data;
+
+    DiskJournalRecordFragment(long recordId, byte type, byte kind, int codecId, int recordLength, int offset,
+                              byte[] data) {
+
+        super(new DiskJournalEntry<V>(null, type), recordId);
+        this.kind = kind;
+        this.codecId = codecId;
+        this.recordLength = recordLength;
+        this.offset = offset;
+        this.data = data;
+    }
+
+    byte getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the id of the compression codec of the whole record's data or 0 if uncompressed
+     */
+    int getCodecId() {
+        return codecId;
+    }
+
+    /**
+     * @return the length of the whole record's data
+     */
+    int getRecordLength() {
+        return recordLength;
+    }
+
+    int getOffset() {
+        return offset;
+    }
+
+    byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        return "DiskJournalRecordFragment [recordId=" + getRecordId() + ", kind=" + kind + ", offset=" + offset
+                + ", length=" + data.length + "]";
+    }
+
+}
@@ -18,59 +18,164 @@
  */
 package com.noctarius.replikate.impl.disk;
 
-import com.noctarius.replikate.spi.JournalEntry;
 import com.noctarius.replikate.JournalListener;
 import com.noctarius.replikate.JournalRecord;
 import com.noctarius.replikate.exceptions.ReplayCancellationException;
-import com.noctarius.replikate.impl.util.Tuple;
-import com.noctarius.replikate.spi.JournalEntryReader;
+import com.noctarius.replikate.spi.NamedThreadFactory;
 import com.noctarius.replikate.spi.ReplayNotificationResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Deque;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
-import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.readHeader;
-
+/**
+ * Replays all journal files in a streaming fashion. Every journal file is read by its own
+ * {@link DiskJournalSegmentCursor} and the cursors are merged by recordId, so that only a few records of every journal
+ * file are held in memory and the first record is announced without reading the whole history upfront. With more than
+ * one replay thread configured journal files are read and decoded concurrently, records are still announced in recordId
+ * order. Indexed journal files start reading at the checkpoint, the indexes of the other journal files are rebuilt
+ * while reading them.
+ */
 class DiskJournalReplayer<V> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DiskJournalReplayer.class);
 
+    private static final int PREFETCH_RECORDS = 256;
+
     private final DiskJournal<V> journal;
 
     private final JournalListener<V> listener;
 
+    private final DiskJournalRecordAssembler<V> assembler;
+
     DiskJournalReplayer(DiskJournal<V> journal, JournalListener<V> listener) {
         this.journal = journal;
         this.listener = listener;
+        this.assembler = new DiskJournalRecordAssembler<>(journal);
     }
 
     void replay() {
-        List<DiskJournalRecord<V>> records = new LinkedList<>();
-        List<DiskJournalFile<V>> diskJournalFiles = new LinkedList<>();
+        List<DiskJournalSegmentCursor<V>> cursors = new ArrayList<>();
+        int replayThreads = journal.getReplayThreads();
+        ExecutorService executorService = replayThreads > 1 //
+                ? Executors.newFixedThreadPool(replayThreads, new NamedThreadFactory("RepliKate-Replay")) : null;
+
+        try {
+            File directory = journal.getJournalPath().toFile();
+            Stream.of(directory.listFiles()).forEach(collectJournalFiles(cursors));
+
+            List<DiskJournalSegmentPrefetcher<V>> prefetchers = new ArrayList<>();
+            for (DiskJournalSegmentCursor<V> cursor : cursors) {
+                if (cursor.isIndexed()) {
+                    // Records covered by the checkpoint do not even need to be skipped one by one
+                    cursor.seek(journal.getCheckpointRecordId() + 1);
+                }
+                cursor.release();
+                prefetchers.add(new DiskJournalSegmentPrefetcher<>(cursor, journal.getCheckpointRecordId(),
+                        executorService, PREFETCH_RECORDS));
+            }
+            Collections.sort(prefetchers);
+
+            // Replay records
+            PriorityQueue<DiskJournalSegmentPrefetcher<V>> pending = new PriorityQueue<>(prefetchers);
+            replayRecords(pending, prefetchers, replayThreads * 2);
+
+            // Replay might be terminated early, the remaining records still need to be known by their journal files
+            for (DiskJournalSegmentPrefetcher<V> prefetcher : pending) {
+                prefetcher.skipRemaining();
+            }
+
+        } catch (IOException e) {
+            throw new ReplayCancellationException("Replay of journal was aborted due to an unreadable journal file", e);
+
+        } finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
+            cursors.forEach(DiskJournalSegmentCursor::close);
+        }
+
+        // Push all still needed journal files to DiskJournal
+        cursors.sort((c1, c2) -> c1.getJournalFile().compareTo(c2.getJournalFile()));
+        for (DiskJournalSegmentCursor<V> cursor : cursors) {
+            DiskJournalFile<V> journalFile = cursor.getJournalFile();
+            if (journalFile.getLastRecordId() <= journal.getCheckpointRecordId() && recycleJournalFile(journalFile)) {
+                continue;
+            }
+            writeRebuiltIndex(cursor);
+            journalFile.setIndex(cursor.getIndex());
+            journal.pushJournalFileFromReplay(journalFile);
+        }
+    }
+
+    private void replayRecords(PriorityQueue<DiskJournalSegmentPrefetcher<V>> pending,
+                               List<DiskJournalSegmentPrefetcher<V>> prefetchers, int prefetchWindow)
+            throws IOException {
+
+        // Journal files are mostly read one after another, start reading ahead the first ones right away
+        int prefetched = Math.min(prefetchWindow, prefetchers.size());
+        for (int i = 0; i < prefetched; i++) {
+            prefetchers.get(i).prefetch();
+        }
+
+        // Journal files interleaving by recordId (like after batches or overflows) stay mapped while recently read
+        Deque<DiskJournalSegmentPrefetcher<V>> recentlyRead = new ArrayDeque<>();
+
+        JournalRecord<V> lastRecord = null;
+        while (!pending.isEmpty()) {
+            DiskJournalSegmentPrefetcher<V> prefetcher = pending.poll();
+            if (!prefetcher.hasNext()) {
+                prefetcher.release();
+                recentlyRead.remove(prefetcher);
+                if (prefetched < prefetchers.size()) {
+                    prefetchers.get(prefetched++).prefetch();
+                }
+                continue;
+            }
+
+            // The queue is ordered by lower bounds, if the actual next record is further ahead try again later
+            DiskJournalSegmentPrefetcher<V> following = pending.peek();
+            if (following != null && following.compareTo(prefetcher) < 0) {
+                pending.add(prefetcher);
+                continue;
+            }
 
-        File directory = journal.getJournalPath().toFile();
-        Stream.of(directory.listFiles()).forEach(collectJournalFiles(records, diskJournalFiles));
+            DiskJournalRecord<V> record = prefetcher.next();
+            pending.add(prefetcher);
+            markRecentlyRead(recentlyRead, prefetcher, prefetchWindow);
 
-        Collections.sort(diskJournalFiles);
-        Collections.sort(records);
+            if (record instanceof DiskJournalRecordFragment) {
+                record = assembler.assemble((DiskJournalRecordFragment<V>) record);
+                if (record == null) {
+                    // More fragments to come
+                    continue;
+                }
+            } else {
+                assembler.discard();
+            }
 
-        // Iterate the list and search for holes in history
-        searchSuspiciousRecords(records);
+            // Search for holes in history
+            if (lastRecord != null && record.getRecordId() != lastRecord.getRecordId() + 1) {
+                LOGGER.error("{}: There is a hole in history in journal {}->{}", journal.getName(),
+                        lastRecord.getRecordId(), record.getRecordId());
 
-        // Push all found journal files to DiskJournal
-        diskJournalFiles.forEach(journal::pushJournalFileFromReplay);
+                if (replaySuspiciousRecord(lastRecord, record)) {
+                    return;
+                }
+            }
+            lastRecord = record;
 
-        // Replay records
-        for (DiskJournalRecord<V> record : records) {
             LOGGER.info("{}: Re-announcing journal entry  {}", journal.getName(), record.getRecordId());
             try {
                 ReplayNotificationResult result = listener.onReplayRecordId(journal, record);
@@ -78,7 +183,7 @@ class DiskJournalReplayer<V> {
                     throw new ReplayCancellationException("Replay of journal was aborted by callback");
                 } else if (result == ReplayNotificationResult.Terminate) {
                     journal.getRecordIdGenerator().notifyHighestJournalRecordId(record.getRecordId());
-                    break;
+                    return;
                 }
                 journal.getRecordIdGenerator().notifyHighestJournalRecordId(record.getRecordId());
             } catch (RuntimeException e) {
@@ -87,36 +192,70 @@ class DiskJournalReplayer<V> {
         }
     }
 
-    private void searchSuspiciousRecords(List<DiskJournalRecord<V>> records) {
-        long lastRecordId = -1;
-        JournalRecord<V> lastRecord = null;
-        for (DiskJournalRecord<V> record : records) {
-            if (lastRecordId != -1 && record.getRecordId() != lastRecordId + 1) {
-                LOGGER.error("{}: There is a hole in history in journal {}->{}", journal.getName(), lastRecordId,
-                        record.getRecordId());
-
-                if (replaySuspiciousRecord(lastRecord, record)) {
-                    break;
-                }
-            }
-            lastRecordId = record.getRecordId();
-            lastRecord = record;
-        }
-    }
-
-    private Consumer<File> collectJournalFiles(List<DiskJournalRecord<V>> records, List<DiskJournalFile<V>> diskJournalFiles) {
+    private Consumer<File> collectJournalFiles(List<DiskJournalSegmentCursor<V>> cursors) {
         return (child) -> {
             if (!child.isDirectory()) {
                 String filename = child.getName();
+                if (filename.startsWith(DiskJournal.CHECKPOINT_FILE_NAME)) {
+                    return;
+                }
+
                 if (journal.getNamingStrategy().isJournal(filename)) {
-                    Tuple<DiskJournalFile<V>, List<DiskJournalRecord<V>>> result = readForward(child.toPath());
-                    diskJournalFiles.add(result.getLeft());
-                    records.addAll(result.getRight());
+                    try {
+                        DiskJournalSegmentCursor<V> cursor = new DiskJournalSegmentCursor<>(journal, child);
+                        LOGGER.info("{}: Reading old journal file with logNumber {}", journal.getName(),
+                                cursor.getJournalFile().getLogNumber());
+                        cursors.add(cursor);
+                    } catch (IOException e) {
+                        // Something went wrong but we want to execute as much journal entries as possible so we'll
+                        // ignore that one here!
+                        LOGGER.warn("{}: Could not read journal file {}", journal.getName(), filename, e);
+                    }
                 }
             }
         };
     }
 
+    private void writeRebuiltIndex(DiskJournalSegmentCursor<V> cursor) {
+        try {
+            cursor.writeRebuiltIndex();
+        } catch (IOException e) {
+            LOGGER.warn("{}: Could not write index of journal file {}", journal.getName(),
+                    cursor.getJournalFile().getFileName(), e);
+        }
+    }
+
+    private boolean recycleJournalFile(DiskJournalFile<V> diskJournalFile) {
+        // Journal files with all records covered by the checkpoint are not needed anymore, journal files without any
+        // record (e.g. an unused preallocated one) are only worth keeping for reuse
+        boolean covered = diskJournalFile.getLastRecordId() != -1;
+        if (!covered && !journal.isRecyclingJournalFiles()) {
+            return false;
+        }
+
+        try {
+            journal.recycleJournalFile(diskJournalFile);
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("{}: Could not recycle journal file {}", journal.getName(), diskJournalFile.getFileName(), e);
+            return false;
+        }
+    }
+
+    private void markRecentlyRead(Deque<DiskJournalSegmentPrefetcher<V>> recentlyRead,
+                                  DiskJournalSegmentPrefetcher<V> prefetcher, int prefetchWindow) {
+
+        if (recentlyRead.peekFirst() == prefetcher) {
+            return;
+        }
+        recentlyRead.remove(prefetcher);
+        recentlyRead.addFirst(prefetcher);
+        if (recentlyRead.size() > prefetchWindow) {
+            // Keep the number of open files low, the least recently read journal file is closed while not in use
+            recentlyRead.removeLast().release();
+        }
+    }
+
     private boolean replaySuspiciousRecord(JournalRecord<V> lastRecord, DiskJournalRecord<V> record) {
         try {
             ReplayNotificationResult result = listener.onReplaySuspiciousRecordId(journal, lastRecord, record);
@@ -132,62 +271,4 @@ class DiskJournalReplayer<V> {
         return false;
     }
 
-    private Tuple<DiskJournalFile<V>, List<DiskJournalRecord<V>>> readForward(Path file) {
-        DiskJournalFile<V> diskJournalFile = null;
-        List<DiskJournalRecord<V>> records = new LinkedList<>();
-        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
-            DiskJournalFileHeader header = readHeader(raf);
-            diskJournalFile = new DiskJournalFile<>(raf, file.toFile().getName(), header, journal);
-            LOGGER.info("{}: Reading old journal file with logNumber {}", journal.getName(), header.getLogNumber());
-
-            int pos = header.getFirstDataOffset();
-            while (pos < raf.length()) {
-                // Read length at begin of the record start
-                raf.seek(pos);
-                int startingLength = raf.readInt();
-
-                if (startingLength == 0) {
-                    // File is completely read
-                    break;
-                }
-
-                // Read length at begin of the record end
-                raf.seek(pos + startingLength - 4);
-                int endingLength = raf.readInt();
-
-                // If both length values differ this record is broken
-                if (startingLength != endingLength) {
-                    LOGGER.debug("pos={}, startingLength={}, endingLength={}", pos, startingLength, endingLength);
-                    LOGGER.info("{}: Incomplete record in journal file with logNumber {}", journal.getName(),
-                            header.getLogNumber());
-                    break;
-                }
-
-                LOGGER.debug("{}: Found new record in logNumber {}", journal.getName(), header.getLogNumber());
-
-                // Read recordId
-                raf.seek(pos + 4);
-                long recordId = raf.readLong();
-
-                LOGGER.debug("{}: Reading record {}", journal.getName(), recordId);
-
-                // Read information of the entry
-                byte type = raf.readByte();
-                int entryLength = startingLength - DiskJournal.JOURNAL_RECORD_HEADER_SIZE;
-                byte[] entryData = new byte[entryLength];
-                raf.readFully(entryData);
-
-                JournalEntryReader<V> reader = journal.getReader();
-                JournalEntry<V> journalEntry = reader.readJournalEntry(recordId, type, entryData);
-                records.add(new DiskJournalRecord<>(journalEntry, recordId));
-
-                pos += startingLength;
-            }
-        } catch (IOException e) {
-            // Something went wrong but we want to execute as much journal entries as possible so we'll ignore that one
-            // here!
-        }
-        return new Tuple<>(diskJournalFile, records);
-    }
-
 }
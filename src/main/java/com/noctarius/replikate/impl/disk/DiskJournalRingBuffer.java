@@ -0,0 +1,255 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free multi-producer single-consumer ring buffer. Producers claim a slot by advancing the shared tail
+ * and publish the element by bumping the slot's sequence, the single consumer takes elements in claim order. Waiting
+ * for free slots or new elements is done according to the configured {@link DiskJournalWaitStrategy}.
+ * <p>
+ * Iterators are weakly consistent, they return the elements published at the time they advance and never fail because
+ * of concurrent modifications. Elements can only be taken in claim order, therefore removing an element through an
+ * iterator (and with it {@link #remove(Object)}) is not supported.
+ */
+class DiskJournalRingBuffer<E>
+        extends AbstractQueue<E>
+        implements BlockingQueue<E> {
+
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final DiskJournalWaitStrategy waitStrategy;
+    private final int capacity;
+    private final int mask;
+
+    // Only ever written by the single consumer
+    private volatile long head;
+
+    DiskJournalRingBuffer(int capacity, DiskJournalWaitStrategy waitStrategy) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    @Override
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("element");
+        }
+
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference < 0) {
+                // Slot still holds an element of the previous round, buffer is full
+                return false;
+            }
+
+            if (difference == 0 && tail.compareAndSet(position, position + 1)) {
+                elements.set(index, element);
+                sequences.lazySet(index, position + 1);
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void put(E element)
+            throws InterruptedException {
+
+        while (!offer(element)) {
+            waitStrategy.idle();
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    @Override
+    public boolean offer(E element, long timeout, TimeUnit unit)
+            throws InterruptedException {
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!offer(element)) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            waitStrategy.idle();
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        long position = head;
+        int index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) {
+            // Empty or the element is not yet published
+            return null;
+        }
+
+        E element = elements.get(index);
+        elements.lazySet(index, null);
+        sequences.lazySet(index, position + capacity);
+        head = position + 1;
+        return element;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit)
+            throws InterruptedException {
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        E element;
+        while ((element = poll()) == null) {
+            if (System.nanoTime() - deadline >= 0) {
+                return null;
+            }
+            waitStrategy.idle();
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return element;
+    }
+
+    @Override
+    public E take()
+            throws InterruptedException {
+
+        E element;
+        while ((element = poll()) == null) {
+            waitStrategy.idle();
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return element;
+    }
+
+    @Override
+    public E peek() {
+        long position = head;
+        int index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        return elements.get(index);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> collection, int maxElements) {
+        int count = 0;
+        E element;
+        while (count < maxElements && (element = poll()) != null) {
+            collection.add(element);
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new RingBufferIterator();
+    }
+
+    private final class RingBufferIterator
+            implements Iterator<E> {
+
+        private long position = head;
+        private E next = advance();
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public E next() {
+            E element = next;
+            if (element == null) {
+                throw new NoSuchElementException();
+            }
+            next = advance();
+            return element;
+        }
+
+        private E advance() {
+            // Slots already taken by the consumer are skipped, so are slots claimed but not yet published
+            position = Math.max(position, head);
+            long end = tail.get();
+            while (position < end) {
+                int index = (int) (position & mask);
+                long sequence = position + 1;
+                position++;
+
+                if (sequences.get(index) != sequence) {
+                    continue;
+                }
+                E element = elements.get(index);
+
+                // The element belongs to the slot only if it was not taken and replaced in the meantime
+                if (element != null && sequences.get(index) == sequence) {
+                    return element;
+                }
+            }
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.spi.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a configurable number of default journal files created and preallocated in the background so that a journal
+ * overflow only needs to swap the current journal file instead of creating a new one while all writers wait.
+ * Preallocated files are kept in a subdirectory of the journal path (which is ignored by replay) and do not have a
+ * logNumber yet, it is assigned when the file becomes the current journal file. That way logNumbers always follow the
+ * order of the recordIds, no matter if a journal file was preallocated or created inline.
+ */
+class DiskJournalSegmentAllocator<V> {
+
+    static final String PREALLOCATION_DIRECTORY = "preallocated";
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiskJournalSegmentAllocator.class);
+
+    private final BlockingQueue<Path> segments;
+    private final AtomicLong segmentNumber = new AtomicLong();
+    private final ExecutorService executorService;
+    private final Path preallocationDirectory;
+    private final DiskJournal<V> journal;
+
+    private volatile boolean running = true;
+
+    DiskJournalSegmentAllocator(DiskJournal<V> journal, int preallocatedJournalFiles)
+            throws IOException {
+
+        this.journal = journal;
+        this.segments = new LinkedBlockingQueue<>(preallocatedJournalFiles);
+        this.preallocationDirectory = Files.createDirectories(journal.getJournalPath().resolve(PREALLOCATION_DIRECTORY));
+        this.executorService = Executors.newSingleThreadExecutor(new NamedThreadFactory("RepliKate-SegmentAllocator"));
+
+        // Files left over by an earlier run might not be preallocated completely
+        for (File file : preallocationDirectory.toFile().listFiles()) {
+            Files.delete(file.toPath());
+        }
+
+        for (int i = 0; i < preallocatedJournalFiles; i++) {
+            executorService.execute(this::allocate);
+        }
+    }
+
+    /**
+     * Retrieves a ready to use journal file and schedules the creation of its replacement.
+     *
+     * @return the path of a preallocated journal file without logNumber or null if none is available right now
+     */
+    Path poll() {
+        Path segment = segments.poll();
+        if (segment != null && running) {
+            executorService.execute(this::allocate);
+        }
+        return segment;
+    }
+
+    void shutdown() {
+        running = false;
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Never used journal files are empty and can be recycled right away
+        Path segment;
+        while ((segment = segments.poll()) != null) {
+            try {
+                journal.discardPreallocatedJournalFile(segment);
+            } catch (IOException e) {
+                LOGGER.warn("{}: Could not recycle unused journal file {}", journal.getName(), segment, e);
+            }
+        }
+    }
+
+    private void allocate() {
+        if (!running) {
+            return;
+        }
+
+        Path segment = preallocationDirectory.resolve(SEGMENT_PREFIX + segmentNumber.incrementAndGet());
+        try {
+            journal.preallocateJournalFile(segment);
+            if (!segments.offer(segment)) {
+                // Should never happen since every poll schedules exactly one replacement
+                journal.discardPreallocatedJournalFile(segment);
+            }
+        } catch (IOException e) {
+            LOGGER.error("{}: Failed to preallocate journal file", journal.getName(), e);
+        }
+    }
+
+}
@@ -0,0 +1,681 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.impl.util.Crc32c;
+import com.noctarius.replikate.spi.JournalCompressionCodec;
+import com.noctarius.replikate.spi.JournalEntry;
+import com.noctarius.replikate.spi.JournalEntryReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Checksum;
+
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.readHeader;
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.recordChecksum;
+import static com.noctarius.replikate.impl.util.Crc32c.updateInt;
+
+/**
+ * Reads the records of a single journal file one by one in file order. The journal file is memory mapped and the record
+ * framing is parsed directly from the mapped buffer, the entry itself is handed to the {@link JournalEntryReader} as a
+ * slice of the mapping when the record is actually requested. Journal files larger than a single mapping are mapped in
+ * windows moving forward while reading. The mapping is only kept while the cursor is in use and transparently recreated
+ * after {@link #release()}. Journal files of version 1 (without record flags and checksums) are
+ * still readable, checksums of newer files are validated while parsing the framing. Record blocks are expanded into
+ * their records one by one, a block is only decompressed when its first record is requested. Fragments of records
+ * spanning multiple journal files are returned as {@link DiskJournalRecordFragment}s.
+ * <p>
+ * If the journal file has an index the cursor is able to {@link #seek(long)} to a recordId without reading the records
+ * in front of it, otherwise the index is rebuilt while reading the journal file.
+ */
+class DiskJournalSegmentCursor<V>
+        implements Comparable<DiskJournalSegmentCursor<V>>, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiskJournalSegmentCursor.class);
+
+    private static final int LEGACY_JOURNAL_VERSION = 1;
+
+    // length (4) + recordId (8) + type (1) + data + length (4)
+    private static final int LEGACY_RECORD_HEADER_SIZE = 17;
+
+    private final DiskJournalFile<V> journalFile;
+    private final Checksum checksum;
+    private final Checksum batchChecksum;
+    private final DiskJournal<V> journal;
+    private final File file;
+
+    // Framing of the journal file's version
+    private final int recordHeaderSize;
+    private final int recordPrefixSize;
+    private final int recordSuffixSize;
+
+    private final long windowSize;
+
+    // Either the index read from disk or the one rebuilt while reading, never both
+    private final DiskJournalSegmentIndex index;
+    private final DiskJournalSegmentIndex rebuiltIndex;
+
+    // Journal files without preallocation grow while they are written to
+    private long fileSize;
+
+    // The record positions are relative to the currently mapped window
+    private ByteBuffer buffer;
+    private long windowOffset;
+    private int windowLength;
+    private int position;
+
+    // Framing of the next record, recordLength is 0 if the end of the file is reached
+    private int recordLength;
+    private long recordId;
+
+    // Records of a validated batch are not validated a second time
+    private int validatedEnd;
+
+    // Journal files still written to are only read up to the end of the last completely written record
+    private long readLimit;
+
+    // Remaining records of the currently expanded record block, null if not inside a block
+    private ByteBuffer block;
+    private int blockRemaining;
+
+    DiskJournalSegmentCursor(DiskJournal<V> journal, File file)
+            throws IOException {
+
+        this(journal, file, DiskJournalMappedFile.MAPPING_WINDOW_SIZE, null, Long.MAX_VALUE);
+    }
+
+    DiskJournalSegmentCursor(DiskJournal<V> journal, File file, DiskJournalSegmentIndex index, long readLimit)
+            throws IOException {
+
+        this(journal, file, DiskJournalMappedFile.MAPPING_WINDOW_SIZE, index, readLimit);
+    }
+
+    DiskJournalSegmentCursor(DiskJournal<V> journal, File file, long windowSize)
+            throws IOException {
+
+        this(journal, file, windowSize, null, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param index     the already known index of the journal file, if null the index is read from disk
+     * @param readLimit the position up to which the journal file is completely written, records behind are not read
+     */
+    DiskJournalSegmentCursor(DiskJournal<V> journal, File file, long windowSize, DiskJournalSegmentIndex index,
+                             long readLimit)
+            throws IOException {
+
+        this.journal = journal;
+        this.file = file;
+        this.fileSize = file.length();
+        this.windowSize = windowSize;
+        this.readLimit = readLimit;
+
+        if (fileSize < DiskJournal.LEGACY_JOURNAL_FILE_HEADER_SIZE) {
+            throw new EOFException("Journal file " + file.getName() + " is too short for a header");
+        }
+
+        map(0, DiskJournal.JOURNAL_FILE_HEADER_SIZE);
+        DiskJournalFileHeader header;
+        try {
+            header = readHeader(buffer);
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Journal file " + file.getName() + " is too short for a header");
+        }
+        this.journalFile = new DiskJournalChannelFile<>(file.getName(), header, journal);
+        this.position = header.getFirstDataOffset();
+
+        boolean legacy = header.getVersion() == LEGACY_JOURNAL_VERSION;
+        this.checksum = legacy ? null : Crc32c.newChecksum();
+        this.batchChecksum = legacy ? null : Crc32c.newChecksum();
+        this.recordHeaderSize = legacy ? LEGACY_RECORD_HEADER_SIZE : DiskJournal.JOURNAL_RECORD_HEADER_SIZE;
+        this.recordSuffixSize = legacy ? 4 : 8;
+        this.recordPrefixSize = recordHeaderSize - recordSuffixSize;
+
+        this.index = index != null ? index : readIndex(journal, header);
+        this.rebuiltIndex = index == null ? new DiskJournalSegmentIndex(journal.getRecordIndexInterval()) : null;
+        if (index != null && index.getLastRecordId() != -1) {
+            // The records behind a seek position are still known to the journal file
+            journalFile.trackRecordId(index.getFirstRecordId());
+            journalFile.trackRecordId(index.getLastRecordId());
+        }
+
+        LOGGER.debug("{}: Opened journal file with logNumber {}", journal.getName(), header.getLogNumber());
+        readFraming();
+    }
+
+    DiskJournalFile<V> getJournalFile() {
+        return journalFile;
+    }
+
+    boolean hasNext() {
+        return block != null || recordLength > 0;
+    }
+
+    long peekRecordId() {
+        return block != null ? block.getLong(block.position()) : recordId;
+    }
+
+    /**
+     * Deserializes the next record and moves forward to the following one.
+     *
+     * @return the next record
+     * @throws IOException if reading the record failed
+     */
+    DiskJournalRecord<V> next()
+            throws IOException {
+
+        if (block == null) {
+            ensureMapped();
+            if (isFragment()) {
+                DiskJournalRecordFragment<V> fragment = readFragment();
+                advance();
+                return fragment;
+            }
+            if (!isBlock()) {
+                byte type = buffer.get(position + 12);
+                JournalEntry<V> journalEntry = readJournalEntry(recordId, type, uncompress(recordData(position, recordLength)));
+                DiskJournalRecord<V> record = new DiskJournalRecord<>(journalEntry, recordId);
+
+                advance();
+                return record;
+            }
+            openBlock();
+        }
+
+        long recordId = block.getLong();
+        byte type = block.get();
+        ByteBuffer data = nextBlockEntry();
+        return new DiskJournalRecord<>(readJournalEntry(recordId, type, data), recordId);
+    }
+
+    /**
+     * Moves forward to the next record without deserializing the current one.
+     *
+     * @throws IOException if the journal file could not be mapped again
+     */
+    void skip()
+            throws IOException {
+
+        if (block == null) {
+            ensureMapped();
+            if (!isBlock()) {
+                advance();
+                return;
+            }
+            openBlock();
+        }
+
+        // Skip recordId and type
+        block.position(block.position() + 9);
+        nextBlockEntry();
+    }
+
+    /**
+     * Moves forward to the record with the given recordId or the first record behind it if it does not exist. Using the
+     * index only the records in front of the recordId since the last indexed framing are read, without an index all
+     * records in front are read.
+     *
+     * @param recordId the recordId to move to
+     * @throws IOException if reading the journal file failed
+     */
+    void seek(long recordId)
+            throws IOException {
+
+        if (index != null && hasNext() && peekRecordId() < recordId) {
+            if (index.getLastRecordId() < recordId) {
+                // Everything is in front of the recordId
+                block = null;
+                recordLength = 0;
+                return;
+            }
+
+            long indexed = index.floorPosition(recordId);
+            if (indexed > windowOffset + position) {
+                moveTo(indexed);
+            }
+        }
+
+        while (hasNext() && peekRecordId() < recordId) {
+            skip();
+        }
+    }
+
+    /**
+     * Looks for records appended behind the last record read, if all records read so far are consumed.
+     *
+     * @param readLimit the position up to which the journal file is completely written now
+     * @throws IOException if reading the journal file failed
+     */
+    void refresh(long readLimit)
+            throws IOException {
+
+        this.readLimit = readLimit;
+        if (!hasNext()) {
+            if (readLimit > fileSize) {
+                fileSize = file.length();
+            }
+            ensureMapped();
+            readFraming();
+        }
+    }
+
+    boolean isIndexed() {
+        return index != null;
+    }
+
+    /**
+     * @return the index read from disk or the rebuilt one, null if the journal file was not read completely yet or
+     * has no records
+     */
+    DiskJournalSegmentIndex getIndex() {
+        if (index != null) {
+            return index;
+        }
+        if (hasNext() || journalFile.getLastRecordId() == -1) {
+            return null;
+        }
+        rebuiltIndex.seal(journalFile.getFirstRecordId(), journalFile.getLastRecordId());
+        return rebuiltIndex;
+    }
+
+    /**
+     * Writes the index rebuilt while reading, only possible after the journal file was read completely.
+     *
+     * @throws IOException if the index could not be written
+     */
+    void writeRebuiltIndex()
+            throws IOException {
+
+        DiskJournalSegmentIndex index = getIndex();
+        if (index == null || index != rebuiltIndex) {
+            return;
+        }
+
+        long logNumber = journalFile.getLogNumber();
+        DiskJournalIOUtils.writeIndex(journal.resolveIndexFile(logNumber), logNumber, index);
+        LOGGER.info("{}: Rebuilt index of journal file with logNumber {}", journal.getName(), logNumber);
+    }
+
+    /**
+     * Drops the mapping while the cursor is not in use, it is recreated on demand.
+     */
+    void release() {
+        buffer = null;
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+
+    @Override
+    public int compareTo(DiskJournalSegmentCursor<V> o) {
+        int result = Long.compare(peekRecordId(), o.peekRecordId());
+        return result != 0 ? result : journalFile.compareTo(o.journalFile);
+    }
+
+    private void advance()
+            throws IOException {
+
+        position += recordLength;
+        readFraming();
+    }
+
+    private void ensureMapped()
+            throws IOException {
+
+        if (buffer == null) {
+            map(windowOffset, windowLength);
+        }
+    }
+
+    /**
+     * Moves the window forward to the current position if the given number of bytes is not mapped.
+     *
+     * @param length the number of bytes required behind the current position
+     * @throws IOException if the journal file could not be mapped
+     */
+    private void ensureWindow(long length)
+            throws IOException {
+
+        if (position + length > buffer.limit() && windowOffset + buffer.limit() < fileSize) {
+            map(windowOffset + position, length);
+        }
+    }
+
+    private void moveTo(long offset)
+            throws IOException {
+
+        block = null;
+        ensureMapped();
+        if (offset < windowOffset || offset + recordHeaderSize > windowOffset + buffer.limit()) {
+            map(offset, recordHeaderSize);
+            position = 0;
+            validatedEnd = 0;
+        } else {
+            position = (int) (offset - windowOffset);
+        }
+        readFraming();
+    }
+
+    private void readFraming()
+            throws IOException {
+
+        recordLength = 0;
+
+        // Records are indexed by the framing they are read from, for the first record of a batch it is the begin marker
+        long batchBegin = -1;
+
+        int length;
+        while ((length = nextRecordLength()) > 0) {
+            byte flags = checksum == null ? DiskJournal.JOURNAL_RECORD_FLAGS_NONE : buffer.get(position + 13);
+            if ((flags & DiskJournal.JOURNAL_RECORD_FLAGS_BATCH_BEGIN) != 0) {
+                int dataSize = buffer.getInt(position + recordPrefixSize);
+                long batchEnd = windowOffset + position + length + (long) dataSize + DiskJournal.JOURNAL_BATCH_COMMIT_SIZE;
+                if (dataSize < 0 || batchEnd > Math.min(fileSize, readLimit)) {
+                    // Batches reaching behind the readable data are not completely written yet or their begin
+                    // marker is corrupted, either way there is nothing more to read
+                    LOGGER.info("{}: Batch {} exceeds the readable data in journal file with logNumber {}",
+                            journal.getName(), buffer.getLong(position + 4), journalFile.getLogNumber());
+                    return;
+                }
+                ensureWindow((long) length + dataSize + DiskJournal.JOURNAL_BATCH_COMMIT_SIZE);
+                if (!isBatchCommitted(position, length)) {
+                    LOGGER.info("{}: Skipping incomplete batch {} in journal file with logNumber {}", journal.getName(),
+                            buffer.getLong(position + 4), journalFile.getLogNumber());
+
+                    // Failed batches are aborted in place, torn batches are followed by the end of data anyways
+                    position += length + dataSize + DiskJournal.JOURNAL_BATCH_COMMIT_SIZE;
+                    continue;
+                }
+                // Markers are no records by themselves
+                batchBegin = windowOffset + position;
+                position += length;
+
+            } else if ((flags & DiskJournal.JOURNAL_RECORD_FLAGS_BATCH_COMMIT) != 0) {
+                position += length;
+
+            } else {
+                break;
+            }
+        }
+
+        if (length == 0) {
+            return;
+        }
+
+        this.recordId = buffer.getLong(position + 4);
+        this.recordLength = length;
+        journalFile.trackRecordId(recordId);
+        if (rebuiltIndex != null) {
+            if (batchBegin != -1) {
+                rebuiltIndex.add(recordId, batchBegin);
+            } else if (position >= validatedEnd) {
+                rebuiltIndex.add(recordId, windowOffset + position);
+            }
+        }
+        if (isBlock()) {
+            // The block header starts with the block's last recordId
+            journalFile.trackRecordId(buffer.getLong(position + recordPrefixSize));
+        }
+
+        LOGGER.debug("{}: Found record {} in logNumber {}", journal.getName(), recordId, journalFile.getLogNumber());
+    }
+
+    /**
+     * Validates the framing of the record at the given position.
+     *
+     * @param position the position of the record
+     * @return the record's length or 0 if the end of the file, an incomplete or a corrupted record is reached
+     */
+    private int readRecordLength(int position) {
+        int limit = readableLimit();
+        if (position + recordHeaderSize > limit) {
+            return 0;
+        }
+
+        // Read length at begin of the record start
+        int startingLength = buffer.getInt(position);
+        if (startingLength == 0) {
+            // File is completely read
+            return 0;
+        }
+
+        if (startingLength < recordHeaderSize || startingLength > limit - position) {
+            LOGGER.info("{}: Incomplete record in journal file with logNumber {}", journal.getName(),
+                    journalFile.getLogNumber());
+            return 0;
+        }
+
+        // Read length at begin of the record end
+        int endingLength = buffer.getInt(position + startingLength - 4);
+
+        // If both length values differ this record is broken
+        if (startingLength != endingLength) {
+            LOGGER.debug("pos={}, startingLength={}, endingLength={}", position, startingLength, endingLength);
+            LOGGER.info("{}: Incomplete record in journal file with logNumber {}", journal.getName(),
+                    journalFile.getLogNumber());
+            return 0;
+        }
+
+        long recordId = buffer.getLong(position + 4);
+        if (checksum != null && position >= validatedEnd && !validateChecksum(position, recordId, startingLength)) {
+            LOGGER.warn("{}: Corrupted record {} in journal file with logNumber {}", journal.getName(), recordId,
+                    journalFile.getLogNumber());
+            return 0;
+        }
+        return startingLength;
+    }
+
+    private boolean isBatchCommitted(int position, int length) {
+        // The begin marker holds length, count and checksum of the batch's records, the commit marker follows them
+        int dataSize = buffer.getInt(position + recordPrefixSize);
+        int count = buffer.getInt(position + recordPrefixSize + 4);
+        int expected = buffer.getInt(position + recordPrefixSize + 8);
+        if (count < 0 || dataSize < 0 || dataSize > readableLimit() - position - length) {
+            return false;
+        }
+
+        int commitPosition = position + length + dataSize;
+        long lastRecordId = -1;
+        int found = 0;
+
+        batchChecksum.reset();
+        int recordPosition = position + length;
+        while (recordPosition < commitPosition) {
+            int recordLength = readRecordLength(recordPosition);
+            if (recordLength == 0 || recordLength > commitPosition - recordPosition) {
+                return false;
+            }
+            updateInt(batchChecksum, buffer.getInt(recordPosition + recordLength - recordSuffixSize));
+            lastRecordId = buffer.getLong(recordPosition + 4);
+            recordPosition += recordLength;
+            found++;
+        }
+
+        if (found != count || (int) batchChecksum.getValue() != expected) {
+            return false;
+        }
+
+        // The commit marker reuses the recordId of the batch's last record
+        if (readRecordLength(commitPosition) == 0
+                || (buffer.get(commitPosition + 13) & DiskJournal.JOURNAL_RECORD_FLAGS_BATCH_COMMIT) == 0
+                || buffer.getLong(commitPosition + 4) != lastRecordId) {
+            return false;
+        }
+
+        validatedEnd = commitPosition;
+        return true;
+    }
+
+    private int readableLimit() {
+        return (int) Math.min(buffer.limit(), readLimit - windowOffset);
+    }
+
+    private boolean isBlock() {
+        return checksum != null && (buffer.get(position + 13) & DiskJournal.JOURNAL_RECORD_FLAGS_BLOCK) != 0;
+    }
+
+    private boolean isFragment() {
+        return checksum != null && (buffer.get(position + 13) & DiskJournal.JOURNAL_RECORD_FLAGS_FRAGMENT) != 0;
+    }
+
+    private DiskJournalRecordFragment<V> readFragment()
+            throws IOException {
+
+        ByteBuffer data = recordData(position, recordLength);
+        if (data.remaining() < DiskJournal.JOURNAL_RECORD_FRAGMENT_HEADER_SIZE) {
+            throw new IOException("Corrupted record fragment " + recordId);
+        }
+
+        byte kind = data.get();
+        int length = data.getInt();
+        int offset = data.getInt();
+
+        // The mapping might be released before the record is reassembled
+        byte[] fragmentData = new byte[data.remaining()];
+        data.get(fragmentData);
+
+        byte type = buffer.get(position + 12);
+        int codecId = buffer.get(position + 13) & DiskJournal.JOURNAL_RECORD_FLAGS_CODEC_MASK;
+        return new DiskJournalRecordFragment<>(recordId, type, kind, codecId, length, offset, fragmentData);
+    }
+
+    private void openBlock()
+            throws IOException {
+
+        ByteBuffer data = recordData(position, recordLength);
+        if (data.remaining() < DiskJournal.JOURNAL_RECORD_BLOCK_HEADER_SIZE) {
+            throw new IOException("Corrupted record block " + recordId);
+        }
+
+        // Skip the last recordId, it is already known from reading the framing
+        data.getLong();
+        int count = data.getInt();
+
+        ByteBuffer block = uncompress(data.slice());
+        advance();
+
+        if (count > 0) {
+            this.block = block;
+            this.blockRemaining = count;
+        }
+    }
+
+    private ByteBuffer nextBlockEntry()
+            throws IOException {
+
+        if (block.remaining() < 4) {
+            throw new IOException("Corrupted record block");
+        }
+        int length = block.getInt();
+        if (length < 0 || length > block.remaining()) {
+            throw new IOException("Corrupted record block");
+        }
+
+        ByteBuffer data = block.duplicate();
+        data.limit(block.position() + length);
+        block.position(block.position() + length);
+
+        if (--blockRemaining == 0) {
+            block = null;
+        }
+        return data.slice().asReadOnlyBuffer();
+    }
+
+    private ByteBuffer uncompress(ByteBuffer data)
+            throws IOException {
+
+        int codecId = checksum == null ? 0 : buffer.get(position + 13) & DiskJournal.JOURNAL_RECORD_FLAGS_CODEC_MASK;
+        if (codecId == 0) {
+            return data;
+        }
+        JournalCompressionCodec codec = journal.resolveCompressionCodec(codecId);
+        return ByteBuffer.wrap(codec.decompress(data));
+    }
+
+    private JournalEntry<V> readJournalEntry(long recordId, byte type, ByteBuffer data)
+            throws IOException {
+
+        JournalEntryReader<V> reader = journal.getReader();
+        return reader.readJournalEntry(recordId, type, data);
+    }
+
+    private boolean validateChecksum(int position, long recordId, int recordLength) {
+        byte type = buffer.get(position + 12);
+        byte flags = buffer.get(position + 13);
+        int expected = buffer.getInt(position + recordLength - recordSuffixSize);
+        return expected == recordChecksum(checksum, recordId, type, flags, recordData(position, recordLength));
+    }
+
+    private ByteBuffer recordData(int position, int recordLength) {
+        ByteBuffer data = buffer.duplicate();
+        data.limit(position + recordLength - recordSuffixSize);
+        data.position(position + recordPrefixSize);
+        return data.slice().asReadOnlyBuffer();
+    }
+
+    private static DiskJournalSegmentIndex readIndex(DiskJournal<?> journal, DiskJournalFileHeader header) {
+        try {
+            return DiskJournalIOUtils.readIndex(journal.resolveIndexFile(header.getLogNumber()), header.getLogNumber());
+        } catch (IOException e) {
+            LOGGER.warn("{}: Broken index of journal file with logNumber {}, rebuilding it", journal.getName(),
+                    header.getLogNumber(), e);
+            return null;
+        }
+    }
+
+    private int nextRecordLength()
+            throws IOException {
+
+        // The window has to contain the record's framing before its length is known and the whole record afterwards
+        ensureWindow(recordHeaderSize);
+        if (position + recordHeaderSize <= buffer.limit()) {
+            ensureWindow(Math.max(recordHeaderSize, buffer.getInt(position)));
+        }
+        return readRecordLength(position);
+    }
+
+    private void map(long offset, long minLength)
+            throws IOException {
+
+        long length = Math.min(Math.min(Math.max(windowSize, minLength), fileSize - offset), Integer.MAX_VALUE);
+
+        // The mapping stays valid after closing the channel
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            int shift = (int) (offset - windowOffset);
+            position -= shift;
+            validatedEnd -= shift;
+            buffer = mapping;
+            windowOffset = offset;
+            windowLength = (int) length;
+        }
+    }
+
+}
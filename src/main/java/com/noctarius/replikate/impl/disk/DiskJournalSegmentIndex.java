@@ -0,0 +1,130 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import java.util.Arrays;
+
+/**
+ * Sparse index of a single journal file, mapping every n-th recordId to the position of the record, batch, block or
+ * fragment storing it. Indexed positions always point to the start of a framing the {@link DiskJournalSegmentCursor}
+ * reads on its own, never to a record inside a batch. The index is written next to the journal files when a journal file
+ * is sealed and rebuilt while replaying journal files without one, it allows to position a cursor close to any recordId
+ * by a binary search instead of reading all records in front of it.
+ */
+class DiskJournalSegmentIndex {
+
+    static final String INDEX_DIRECTORY = "index";
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int interval;
+
+    private long[] recordIds;
+    private long[] positions;
+    private int size;
+
+    private long firstRecordId = -1;
+    private long lastRecordId = -1;
+
+    DiskJournalSegmentIndex(int interval) {
+        this.interval = interval;
+        this.recordIds = new long[INITIAL_CAPACITY];
+        this.positions = new long[INITIAL_CAPACITY];
+    }
+
+    DiskJournalSegmentIndex(long firstRecordId, long lastRecordId, long[] recordIds, long[] positions) {
+        this.interval = 1;
+        this.recordIds = recordIds;
+        this.positions = positions;
+        this.size = recordIds.length;
+        this.firstRecordId = firstRecordId;
+        this.lastRecordId = lastRecordId;
+    }
+
+    /**
+     * Offers the start of a framing to the index, it is only indexed if the last indexed recordId is at least the
+     * configured interval behind. Framings are expected to be offered in file order.
+     *
+     * @param recordId the first recordId stored in the framing
+     * @param position the position of the framing inside the journal file
+     */
+    void add(long recordId, long position) {
+        if (size > 0 && recordId - recordIds[size - 1] < interval) {
+            return;
+        }
+
+        if (size == recordIds.length) {
+            recordIds = Arrays.copyOf(recordIds, size * 2);
+            positions = Arrays.copyOf(positions, size * 2);
+        }
+        recordIds[size] = recordId;
+        positions[size] = position;
+        size++;
+    }
+
+    /**
+     * Stores the recordId range of the journal file, called before the index is written.
+     */
+    void seal(long firstRecordId, long lastRecordId) {
+        this.firstRecordId = firstRecordId;
+        this.lastRecordId = lastRecordId;
+    }
+
+    /**
+     * Searches the indexed framing reading has to start at to find the given recordId.
+     *
+     * @param recordId the recordId to search for
+     * @return the position of the last indexed framing with a recordId not greater than the given one or -1 if the
+     * recordId is in front of the first indexed framing
+     */
+    long floorPosition(long recordId) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (recordIds[middle] <= recordId) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high < 0 ? -1 : positions[high];
+    }
+
+    long getFirstRecordId() {
+        return firstRecordId;
+    }
+
+    long getLastRecordId() {
+        return lastRecordId;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long getRecordId(int index) {
+        return recordIds[index];
+    }
+
+    long getPosition(int index) {
+        return positions[index];
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.spi.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.recycleJournal;
+import static com.noctarius.replikate.impl.disk.DiskJournalIOUtils.zeroJournal;
+
+/**
+ * Pool of already allocated default journal files that are no longer needed. Recycled files are moved into a
+ * subdirectory of the journal path (which is ignored by replay), their used region is zeroed in the background and they
+ * are handed out again on rollover by renaming them and replacing the header. This saves the filesystem the block
+ * allocation and metadata updates of a freshly created file.
+ */
+class DiskJournalSegmentPool {
+
+    static final String RECYCLE_DIRECTORY = "recycled";
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiskJournalSegmentPool.class);
+
+    private final BlockingQueue<Path> segments = new LinkedBlockingQueue<>();
+    private final AtomicInteger pooledSegments = new AtomicInteger();
+    private final AtomicLong segmentNumber = new AtomicLong();
+
+    private final ExecutorService executorService;
+    private final Path recycleDirectory;
+    private final long maxLogFileSize;
+    private final int capacity;
+    private final String name;
+
+    DiskJournalSegmentPool(String name, Path journalPath, long maxLogFileSize, int capacity)
+            throws IOException {
+
+        this.name = name;
+        this.maxLogFileSize = maxLogFileSize;
+        this.capacity = capacity;
+        this.recycleDirectory = Files.createDirectories(journalPath.resolve(RECYCLE_DIRECTORY));
+        this.executorService = Executors.newSingleThreadExecutor(new NamedThreadFactory("RepliKate-SegmentRecycler"));
+
+        // Files left over by an earlier run might not have been zeroed completely, so they are zeroed again
+        long highestSegmentNumber = 0;
+        int segmentCount = 0;
+        for (File file : recycleDirectory.toFile().listFiles()) {
+            Path segment = file.toPath();
+            long number = parseSegmentNumber(file.getName());
+            if (number == -1 || file.length() != maxLogFileSize || segmentCount >= capacity) {
+                Files.delete(segment);
+                continue;
+            }
+            segmentCount++;
+            highestSegmentNumber = Math.max(highestSegmentNumber, number);
+            executorService.execute(() -> zero(segment, maxLogFileSize));
+        }
+        pooledSegments.set(segmentCount);
+        segmentNumber.set(highestSegmentNumber);
+    }
+
+    /**
+     * Takes over the given, already closed journal file if it fits the pool.
+     *
+     * @param file     the path of the journal file
+     * @param header   the header of the journal file
+     * @param dirtyEnd the position up to which the file may contain data
+     * @return true if the file was taken over, otherwise the caller is responsible for removing it
+     * @throws IOException if the file could not be moved into the pool
+     */
+    boolean recycle(Path file, DiskJournalFileHeader header, long dirtyEnd)
+            throws IOException {
+
+        if (header.getType() != DiskJournal.JOURNAL_FILE_TYPE_DEFAULT || header.getMaxLogFileSize() != maxLogFileSize) {
+            return false;
+        }
+
+        if (pooledSegments.incrementAndGet() > capacity) {
+            pooledSegments.decrementAndGet();
+            return false;
+        }
+
+        Path segment = recycleDirectory.resolve(SEGMENT_PREFIX + segmentNumber.incrementAndGet());
+        try {
+            Files.move(file, segment, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            pooledSegments.decrementAndGet();
+            throw e;
+        }
+
+        if (dirtyEnd <= header.getFirstDataOffset()) {
+            // Never written, nothing to zero
+            segments.offer(segment);
+        } else {
+            executorService.execute(() -> zero(segment, dirtyEnd));
+        }
+        return true;
+    }
+
+    /**
+     * Moves a ready to use file from the pool to the given path and writes the new header.
+     *
+     * @param file   the path the journal file is expected at
+     * @param header the new header of the journal file
+     * @return true if a pooled file was reused, false if the pool is empty
+     * @throws IOException if the pooled file could not be moved or re-headered
+     */
+    boolean reuse(Path file, DiskJournalFileHeader header)
+            throws IOException {
+
+        Path segment = segments.poll();
+        if (segment == null) {
+            return false;
+        }
+
+        pooledSegments.decrementAndGet();
+        Files.move(segment, file, StandardCopyOption.ATOMIC_MOVE);
+        recycleJournal(file, header);
+        return true;
+    }
+
+    /**
+     * @return the number of pooled files that are zeroed and ready to be reused
+     */
+    int getAvailableSegments() {
+        return segments.size();
+    }
+
+    void shutdown() {
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long parseSegmentNumber(String fileName) {
+        if (!fileName.startsWith(SEGMENT_PREFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(fileName.substring(SEGMENT_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void zero(Path segment, long dirtyEnd) {
+        try {
+            zeroJournal(segment, DiskJournal.JOURNAL_FILE_HEADER_SIZE, dirtyEnd);
+            segments.offer(segment);
+        } catch (IOException e) {
+            LOGGER.warn("{}: Could not recycle journal file {}", name, segment, e);
+            pooledSegments.decrementAndGet();
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException ignore) {
+                // Will be retried on next startup
+            }
+        }
+    }
+
+}
@@ -0,0 +1,257 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+
+/**
+ * Reads and decodes the records of a single journal file ahead of the replay. Without an executor records are read one
+ * by one on demand, with an executor up to a fixed number of records is read ahead on the executor's threads. Read
+ * ahead tasks never wait for the replay to catch up but end when the buffer is full and are rescheduled once the
+ * replay consumed half of it, so a small pool can serve any number of journal files.
+ * <p>
+ * Records covered by the checkpoint are skipped without being deserialized.
+ */
+class DiskJournalSegmentPrefetcher<V>
+        implements Comparable<DiskJournalSegmentPrefetcher<V>> {
+
+    private final Deque<DiskJournalRecord<V>> buffer = new ArrayDeque<>();
+
+    private final DiskJournalSegmentCursor<V> cursor;
+    private final long checkpointRecordId;
+    private final Executor executor;
+    private final int capacity;
+
+    // Lower bound of the next record's recordId, exact after hasNext returned true
+    private long nextRecordId;
+
+    private boolean exhausted;
+    private boolean scheduled;
+    private Exception failure;
+
+    DiskJournalSegmentPrefetcher(DiskJournalSegmentCursor<V> cursor, long checkpointRecordId, Executor executor,
+                                 int capacity) {
+
+        this.cursor = cursor;
+        this.checkpointRecordId = checkpointRecordId;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.nextRecordId = cursor.peekRecordId();
+        this.exhausted = !cursor.hasNext();
+    }
+
+    DiskJournalFile<V> getJournalFile() {
+        return cursor.getJournalFile();
+    }
+
+    /**
+     * Starts reading ahead if an executor is available.
+     */
+    synchronized void prefetch() {
+        schedule();
+    }
+
+    /**
+     * Waits for the next record to be available.
+     *
+     * @return true if there is a next record, false if the journal file is completely read
+     * @throws IOException if reading the journal file failed
+     */
+    boolean hasNext()
+            throws IOException {
+
+        if (executor == null) {
+            if (buffer.isEmpty() && !exhausted) {
+                DiskJournalRecord<V> record = readRecord();
+                if (record == null) {
+                    exhausted = true;
+                    cursor.release();
+                } else {
+                    buffer.add(record);
+                }
+            }
+            return peekNext();
+        }
+
+        // The buffer is filled by read ahead tasks concurrently, it is only ever touched while holding the lock
+        synchronized (this) {
+            while (buffer.isEmpty() && !exhausted) {
+                schedule();
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for journal records");
+                }
+            }
+            rethrowFailure();
+            return peekNext();
+        }
+    }
+
+    long peekRecordId() {
+        return nextRecordId;
+    }
+
+    DiskJournalRecord<V> next() {
+        if (executor == null) {
+            return buffer.poll();
+        }
+
+        synchronized (this) {
+            DiskJournalRecord<V> record = buffer.poll();
+            if (buffer.size() < capacity / 2) {
+                schedule();
+            }
+            return record;
+        }
+    }
+
+    /**
+     * Skips all remaining records, they are still made known to the journal file.
+     *
+     * @throws IOException if reading the journal file failed
+     */
+    void skipRemaining()
+            throws IOException {
+
+        synchronized (this) {
+            while (scheduled) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for journal records");
+                }
+            }
+            exhausted = true;
+            buffer.clear();
+        }
+
+        while (cursor.hasNext()) {
+            cursor.skip();
+        }
+        cursor.release();
+    }
+
+    /**
+     * Closes the journal file while not in use, only possible if records are read on demand.
+     */
+    void release() {
+        if (executor == null) {
+            cursor.release();
+        }
+    }
+
+    void close() {
+        cursor.close();
+    }
+
+    @Override
+    public int compareTo(DiskJournalSegmentPrefetcher<V> o) {
+        int result = Long.compare(nextRecordId, o.nextRecordId);
+        return result != 0 ? result : getJournalFile().compareTo(o.getJournalFile());
+    }
+
+    private boolean peekNext() {
+        DiskJournalRecord<V> record = buffer.peek();
+        if (record == null) {
+            return false;
+        }
+        nextRecordId = record.getRecordId();
+        return true;
+    }
+
+    private void schedule() {
+        if (executor != null && !scheduled && !exhausted) {
+            scheduled = true;
+            executor.execute(this::readAhead);
+        }
+    }
+
+    private void readAhead() {
+        try {
+            while (true) {
+                synchronized (this) {
+                    if (exhausted || buffer.size() >= capacity) {
+                        // Never wait for the replay to catch up, the task is rescheduled when needed
+                        cursor.release();
+                        scheduled = false;
+                        notifyAll();
+                        return;
+                    }
+                }
+
+                // Decoding happens outside the lock, the cursor is only used by a single task at a time
+                DiskJournalRecord<V> record = readRecord();
+
+                synchronized (this) {
+                    if (record == null) {
+                        cursor.release();
+                        exhausted = true;
+                        scheduled = false;
+                        notifyAll();
+                        return;
+                    }
+                    buffer.add(record);
+                    notifyAll();
+                }
+            }
+
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                cursor.release();
+                failure = e;
+                exhausted = true;
+                scheduled = false;
+                notifyAll();
+            }
+        }
+    }
+
+    private DiskJournalRecord<V> readRecord()
+            throws IOException {
+
+        while (cursor.hasNext()) {
+            if (cursor.peekRecordId() <= checkpointRecordId) {
+                // Already applied according to the checkpoint, no need to read the entry
+                cursor.skip();
+                continue;
+            }
+            return cursor.next();
+        }
+        return null;
+    }
+
+    private void rethrowFailure()
+            throws IOException {
+
+        if (failure != null && buffer.isEmpty()) {
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            throw (RuntimeException) failure;
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Defines the durability guarantees of a {@link DiskJournal}. Relaxed modes trade durability of the latest records on
+ * power loss for lower append latency.
+ */
+public enum DiskJournalSyncMode {
+
+    /**
+     * Every write synchronously persists data and file metadata (default)
+     */
+    SyncMetadata(StandardOpenOption.SYNC),
+
+    /**
+     * Every write synchronously persists data but not necessarily file metadata
+     */
+    SyncData(StandardOpenOption.DSYNC),
+
+    /**
+     * Data is synced to disk whenever the configured amount of bytes was written since the last sync
+     */
+    SyncBytes(null),
+
+    /**
+     * Data is synced to disk whenever the configured interval elapsed since the last sync
+     */
+    SyncInterval(null),
+
+    /**
+     * Data is left to the operating system's buffers and only synced when a journal file is closed
+     */
+    Buffered(null);
+
+    private final StandardOpenOption syncOption;
+
+    DiskJournalSyncMode(StandardOpenOption syncOption) {
+        this.syncOption = syncOption;
+    }
+
+    Set<OpenOption> getOpenOptions() {
+        Set<OpenOption> openOptions = new HashSet<>();
+        openOptions.add(StandardOpenOption.CREATE);
+        openOptions.add(StandardOpenOption.READ);
+        openOptions.add(StandardOpenOption.WRITE);
+        if (syncOption != null) {
+            openOptions.add(syncOption);
+        }
+        return openOptions;
+    }
+
+    boolean isSyncOnWrite() {
+        return syncOption != null;
+    }
+
+}
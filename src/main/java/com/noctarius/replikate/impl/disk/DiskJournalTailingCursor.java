@@ -0,0 +1,175 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.JournalCursor;
+import com.noctarius.replikate.JournalRecord;
+import com.noctarius.replikate.exceptions.JournalException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows the journal files of a {@link DiskJournal} using a {@link DiskJournalSegmentCursor} that stays open on the
+ * journal file currently read, even while it is still written to. Records are only read up to the written position of
+ * the journal file, so appending threads never wait for consumers. New records are discovered by polling, waiting in
+ * between according to the configured {@link DiskJournalWaitStrategy}.
+ */
+class DiskJournalTailingCursor<V>
+        implements JournalCursor<V> {
+
+    private final DiskJournal<V> journal;
+    private final DiskJournalWaitStrategy waitStrategy;
+    private final DiskJournalRecordAssembler<V> assembler;
+
+    // The journal file read last, the segment cursor is null if it is completely read or not opened yet
+    private DiskJournalFile<V> journalFile;
+    private DiskJournalSegmentCursor<V> cursor;
+
+    private long nextRecordId;
+    private boolean closed;
+
+    DiskJournalTailingCursor(DiskJournal<V> journal, long recordId, DiskJournalWaitStrategy waitStrategy) {
+        this.journal = journal;
+        this.waitStrategy = waitStrategy;
+        this.assembler = new DiskJournalRecordAssembler<>(journal);
+        this.nextRecordId = recordId;
+    }
+
+    @Override
+    public JournalRecord<V> poll()
+            throws JournalException {
+
+        if (closed) {
+            throw new JournalException("JournalCursor already closed");
+        }
+        if (journal.isShutdown()) {
+            throw new JournalException("DiskJournal already closed");
+        }
+
+        try {
+            while (true) {
+                if (cursor == null && !openNextJournalFile()) {
+                    return null;
+                }
+
+                // Once a journal file is sealed, everything up to its final written position belongs to it
+                boolean sealed = !journalFile.isWritable();
+                cursor.refresh(journalFile.getWrittenPosition());
+                if (!cursor.hasNext()) {
+                    if (!sealed) {
+                        return null;
+                    }
+                    closeJournalFile();
+                    continue;
+                }
+
+                DiskJournalRecord<V> record = cursor.next();
+                if (journalFile.isRemoved()) {
+                    // Removed by a checkpoint while reading, a recycled journal file is overwritten
+                    assembler.discard();
+                    closeJournalFile();
+                    continue;
+                }
+
+                if (record instanceof DiskJournalRecordFragment) {
+                    record = assembler.assemble((DiskJournalRecordFragment<V>) record);
+                    if (record == null) {
+                        // More fragments to come, possibly from the next journal file
+                        continue;
+                    }
+                } else {
+                    assembler.discard();
+                }
+
+                if (record.getRecordId() < nextRecordId) {
+                    continue;
+                }
+                nextRecordId = record.getRecordId() + 1;
+                return record;
+            }
+        } catch (IOException e) {
+            throw new JournalException("Failed to read journal file " + journalFile.getFileName(), e);
+        }
+    }
+
+    @Override
+    public JournalRecord<V> poll(long timeout, TimeUnit unit)
+            throws JournalException, InterruptedException {
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            JournalRecord<V> record = poll();
+            if (record != null) {
+                return record;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return null;
+            }
+            waitStrategy.idle();
+        }
+    }
+
+    @Override
+    public long getNextRecordId() {
+        return nextRecordId;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        closeJournalFile();
+        assembler.discard();
+    }
+
+    private boolean openNextJournalFile()
+            throws IOException {
+
+        while (true) {
+            long logNumber = journalFile != null ? journalFile.getLogNumber() : -1;
+            DiskJournalFile<V> next = journal.nextJournalFile(logNumber, nextRecordId);
+            if (next == null) {
+                return false;
+            }
+
+            journalFile = next;
+            File file = journal.getJournalPath().resolve(next.getFileName()).toFile();
+            if (next.isRemoved() || !file.exists()) {
+                // Removed by a checkpoint in the meantime
+                continue;
+            }
+
+            cursor = new DiskJournalSegmentCursor<>(journal, file, next.getIndex(), next.getWrittenPosition());
+            cursor.seek(nextRecordId);
+            return true;
+        }
+    }
+
+    private void closeJournalFile() {
+        if (cursor != null) {
+            cursor.close();
+            cursor = null;
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Defines how threads wait on the ingest ring buffer of a {@link DiskJournal}, either the writer thread for new entries
+ * or appending threads for free slots. Also used by {@link com.noctarius.replikate.JournalCursor}s waiting for new
+ * records. Busier strategies react faster but burn more CPU while waiting.
+ */
+public enum DiskJournalWaitStrategy {
+
+    /**
+     * Busy spins, lowest latency but occupies a core per waiting thread
+     */
+    Spin {
+        @Override
+        void idle() {
+        }
+    },
+
+    /**
+     * Yields to other threads between retries
+     */
+    Yield {
+        @Override
+        void idle() {
+            Thread.yield();
+        }
+    },
+
+    /**
+     * Parks for a few microseconds between retries (default)
+     */
+    Park {
+        @Override
+        void idle() {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    };
+
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+
+    abstract void idle();
+
+}
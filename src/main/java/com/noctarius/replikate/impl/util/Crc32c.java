@@ -0,0 +1,174 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * CRC32C (Castagnoli) checksum. {@link #newChecksum()} prefers the intrinsic-accelerated {@code java.util.zip.CRC32C}
+ * of Java 9 and later and falls back to this table based implementation when running on Java 8.
+ */
+public final class Crc32c
+        implements Checksum {
+
+    private static final int POLYNOMIAL = 0x82F63B78;
+
+    private static final int[] TABLE = new int[256];
+
+    private static final Class<?> INTRINSIC_CLASS = findIntrinsic();
+    private static final MethodHandle BUFFER_UPDATE = findBufferUpdate();
+
+    private static final int SCRATCH_SIZE = 4096;
+
+    private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[SCRATCH_SIZE];
+        }
+    };
+
+    static {
+        for (int i = 0; i < TABLE.length; i++) {
+            int crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+            }
+            TABLE[i] = crc;
+        }
+    }
+
+    private int crc = 0xFFFFFFFF;
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xFF];
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        int crc = this.crc;
+        for (int i = off; i < off + len; i++) {
+            crc = (crc >>> 8) ^ TABLE[(crc ^ b[i]) & 0xFF];
+        }
+        this.crc = crc;
+    }
+
+    @Override
+    public long getValue() {
+        return (~crc) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+
+    /**
+     * Creates a new, not thread-safe, CRC32C checksum.
+     *
+     * @return the intrinsic JDK implementation if available, otherwise a table based one
+     */
+    public static Checksum newChecksum() {
+        if (INTRINSIC_CLASS != null) {
+            try {
+                return (Checksum) INTRINSIC_CLASS.getConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                // Fall through to the table based implementation
+            }
+        }
+        return new Crc32c();
+    }
+
+    /**
+     * Updates the checksum with the remaining bytes of the given buffer and moves the buffer's position to its limit.
+     * Direct buffers are handed to the JDK implementation without copying if possible.
+     *
+     * @param checksum the checksum to update
+     * @param buffer   the bytes to add
+     */
+    public static void update(Checksum checksum, ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            checksum.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+
+        if (BUFFER_UPDATE != null && !(checksum instanceof Crc32c)) {
+            try {
+                BUFFER_UPDATE.invokeExact(checksum, buffer);
+                return;
+            } catch (Throwable throwable) {
+                throw new IllegalStateException("Could not update checksum", throwable);
+            }
+        }
+
+        byte[] scratch = SCRATCH.get();
+        while (buffer.hasRemaining()) {
+            int length = Math.min(scratch.length, buffer.remaining());
+            buffer.get(scratch, 0, length);
+            checksum.update(scratch, 0, length);
+        }
+    }
+
+    /**
+     * Updates the checksum with the big-endian representation of the given long value.
+     *
+     * @param checksum the checksum to update
+     * @param value    the value to add
+     */
+    public static void updateLong(Checksum checksum, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            checksum.update((int) (value >>> shift));
+        }
+    }
+
+    /**
+     * Updates the checksum with the big-endian representation of the given int value.
+     *
+     * @param checksum the checksum to update
+     * @param value    the value to add
+     */
+    public static void updateInt(Checksum checksum, int value) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            checksum.update(value >>> shift);
+        }
+    }
+
+    private static Class<?> findIntrinsic() {
+        try {
+            return Class.forName("java.util.zip.CRC32C");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle findBufferUpdate() {
+        try {
+            MethodType methodType = MethodType.methodType(void.class, ByteBuffer.class);
+            return MethodHandles.publicLookup().findVirtual(Checksum.class, "update", methodType);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+}
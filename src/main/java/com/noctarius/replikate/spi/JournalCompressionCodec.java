@@ -0,0 +1,57 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.spi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compresses serialized journal entries before they are framed into a record. The id of the codec is stored with every
+ * compressed record, therefore it has to stay stable for a codec as long as journal files written with it exist.
+ * Implementations have to be thread-safe.
+ */
+public interface JournalCompressionCodec {
+
+    /**
+     * @return the id of the codec, between 1 and 15
+     */
+    byte getCodecId();
+
+    /**
+     * Compresses the given serialized entry. If the result is not smaller than the input the entry is stored
+     * uncompressed.
+     *
+     * @param data the serialized entry
+     * @return the compressed entry
+     * @throws IOException if compressing failed
+     */
+    byte[] compress(byte[] data)
+            throws IOException;
+
+    /**
+     * Restores a serialized entry previously compressed by this codec.
+     *
+     * @param data the compressed entry, positioned at its first byte
+     * @return the serialized entry
+     * @throws IOException if the compressed data is corrupted
+     */
+    byte[] decompress(ByteBuffer data)
+            throws IOException;
+
+}
@@ -0,0 +1,47 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.spi;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link JournalEntryWriter} able to serialize entries straight into a caller provided {@link ByteBuffer}, which can be
+ * a pooled write buffer or even the memory mapped journal file itself. This prevents the intermediate arrays of the
+ * {@link java.io.DataOutput} based serialization. {@link #estimateRecordSize(JournalEntry)} is used to size buffers
+ * if the record size is {@link #isRecordSizeEstimateable() estimateable}.
+ */
+public interface JournalEntryBufferWriter<V>
+        extends JournalEntryWriter<V> {
+
+    /**
+     * Serializes the given entry into the buffer, starting at the buffer's position. After returning the buffer's
+     * position has to be directly behind the last written byte. If the remaining space is not sufficient a
+     * {@link BufferOverflowException} has to be thrown (as the relative put methods of ByteBuffer do), the entry is then
+     * written again into a larger buffer.
+     *
+     * @param entry  the entry to serialize
+     * @param buffer the buffer to serialize into
+     * @throws IOException if the entry could not be serialized
+     */
+    void writeJournalEntry(JournalEntry<V> entry, ByteBuffer buffer)
+            throws IOException;
+
+}
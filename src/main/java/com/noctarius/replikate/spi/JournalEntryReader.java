@@ -19,10 +19,38 @@
 package com.noctarius.replikate.spi;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public interface JournalEntryReader<V> {
 
     JournalEntry<V> readJournalEntry(long recordId, byte type, byte[] data)
             throws IOException;
 
+    /**
+     * Reads a journal entry directly from a read-only view of the journal file, the view is only valid for the time of
+     * the call. By default the data is copied into an array and handed to
+     * {@link #readJournalEntry(long, byte, byte[])}, implementations able to decode from a buffer should override this
+     * method to prevent the copy.
+     *
+     * @param recordId the recordId of the entry
+     * @param type     the type of the entry
+     * @param data     the serialized entry, positioned at its first byte
+     * @return the deserialized journal entry
+     * @throws IOException if the entry could not be read
+     */
+    default JournalEntry<V> readJournalEntry(long recordId, byte type, ByteBuffer data)
+            throws IOException {
+
+        // Buffers exactly wrapping an array (like decompressed entries) are handed over without copying
+        if (data.hasArray() && data.arrayOffset() == 0 && data.position() == 0
+                && data.remaining() == data.array().length) {
+
+            return readJournalEntry(recordId, type, data.array());
+        }
+
+        byte[] array = new byte[data.remaining()];
+        data.get(array);
+        return readJournalEntry(recordId, type, array);
+    }
+
 }
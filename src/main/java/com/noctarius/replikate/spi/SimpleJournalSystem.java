@@ -22,7 +22,9 @@ import com.noctarius.replikate.Journal;
 import com.noctarius.replikate.JournalBatch;
 import com.noctarius.replikate.JournalConfiguration;
 import com.noctarius.replikate.JournalListener;
+import com.noctarius.replikate.JournalCursor;
 import com.noctarius.replikate.JournalNamingStrategy;
+import com.noctarius.replikate.JournalRecord;
 import com.noctarius.replikate.JournalStrategy;
 import com.noctarius.replikate.JournalSystem;
 import com.noctarius.replikate.exceptions.JournalException;
@@ -32,7 +34,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -138,6 +142,16 @@ public class SimpleJournalSystem
             journal.appendEntry(entry, type, listener);
         }
 
+        @Override
+        public CompletableFuture<JournalRecord<V>> appendEntryAsync(V entry, byte type) {
+            return journal.appendEntryAsync(entry, type);
+        }
+
+        @Override
+        public CompletableFuture<JournalRecord<V>> appendEntryAsync(V entry, byte type, JournalListener<V> listener) {
+            return journal.appendEntryAsync(entry, type, listener);
+        }
+
         @Override
         public JournalBatch<V> startBatchProcess() {
             return journal.startBatchProcess();
@@ -153,6 +167,34 @@ public class SimpleJournalSystem
             return journal.getLastRecordId();
         }
 
+        @Override
+        public JournalRecord<V> readRecord(long recordId)
+                throws JournalException {
+
+            return journal.readRecord(recordId);
+        }
+
+        @Override
+        public List<JournalRecord<V>> readRange(long fromRecordId, long toRecordId)
+                throws JournalException {
+
+            return journal.readRange(fromRecordId, toRecordId);
+        }
+
+        @Override
+        public JournalCursor<V> openCursor(long recordId)
+                throws JournalException {
+
+            return journal.openCursor(recordId);
+        }
+
+        @Override
+        public void checkpoint(long recordId)
+                throws JournalException {
+
+            journal.checkpoint(recordId);
+        }
+
         @Override
         public long nextLogNumber() {
             return journal.nextLogNumber();
@@ -0,0 +1,141 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.Journal;
+import com.noctarius.replikate.JournalBatch;
+import com.noctarius.replikate.JournalRecord;
+import com.noctarius.replikate.JournalSystem;
+import com.noctarius.replikate.SimpleJournalEntry;
+import com.noctarius.replikate.impl.disk.BasicDiskJournalTestCase.NamingStrategy;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.CountingFlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.FlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordIdGenerator;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordReader;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordWriter;
+import com.noctarius.replikate.spi.JournalEntry;
+import com.noctarius.replikate.spi.ReplayNotificationResult;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class AsyncAppendTestCase
+        extends AbstractJournalTestCase {
+
+    @Test
+    public void testAppendEntryAsync()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testAppendEntryAsync");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildAsyncConfiguration(path);
+        Journal<byte[]> journal = journalSystem.getJournal("testAppendEntryAsync", configuration);
+
+        @SuppressWarnings("unchecked") JournalEntry<byte[]>[] records = new JournalEntry[100];
+        List<CompletableFuture<JournalRecord<byte[]>>> futures = new ArrayList<>();
+        for (int i = 0; i < records.length; i++) {
+            records[i] = buildTestRecord((byte) i);
+            futures.add(journal.appendEntryAsync(records[i].getValue(), records[i].getType()));
+        }
+
+        Set<Long> recordIds = new HashSet<>();
+        for (int i = 0; i < records.length; i++) {
+            JournalRecord<byte[]> record = futures.get(i).get(30, TimeUnit.SECONDS);
+            assertSame(records[i].getValue(), record.getJournalEntry().getValue());
+            recordIds.add(record.getRecordId());
+        }
+        assertEquals(records.length, recordIds.size());
+
+        journal.close();
+
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        journal = journalSystem.getJournal("testAppendEntryAsync", configuration);
+
+        assertEquals(records.length, listener.getCount());
+        for (int i = 0; i < records.length; i++) {
+            assertEquals(records[i], listener.get(i));
+        }
+
+        journal.close();
+    }
+
+    @Test
+    public void testBatchCommitAsync()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testBatchCommitAsync");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildAsyncConfiguration(path);
+        Journal<byte[]> journal = journalSystem.getJournal("testBatchCommitAsync", configuration);
+
+        JournalEntry<byte[]> first = buildTestRecord((byte) 1);
+        CompletableFuture<JournalRecord<byte[]>> future = journal.appendEntryAsync(first.getValue(), first.getType());
+
+        JournalBatch<byte[]> batch = journal.startBatchProcess();
+        for (int i = 0; i < 5; i++) {
+            JournalEntry<byte[]> record = buildTestRecord((byte) i);
+            batch.appendEntry(record.getValue(), record.getType());
+        }
+        List<JournalRecord<byte[]>> records = batch.commitAsync().get(30, TimeUnit.SECONDS);
+
+        assertEquals(1, future.get(30, TimeUnit.SECONDS).getRecordId());
+        assertEquals(5, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i + 2, records.get(i).getRecordId());
+        }
+
+        journal.close();
+
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        journal = journalSystem.getJournal("testBatchCommitAsync", configuration);
+
+        assertEquals(6, listener.getCount());
+
+        journal.close();
+    }
+
+    private DiskJournalConfiguration<byte[]> buildAsyncConfiguration(File path) {
+        return (DiskJournalConfiguration<byte[]>) buildDiskJournalConfiguration(path.toPath(), 4096, new RecordReader(),
+                new RecordWriter(), new FlushListener(), new NamingStrategy(), new RecordIdGenerator());
+    }
+
+    private SimpleJournalEntry<byte[]> buildTestRecord(byte type) {
+        Random random = new Random(-System.nanoTime());
+        byte[] data = new byte[200];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) random.nextInt(255);
+        }
+        return new SimpleJournalEntry<>(data, type);
+    }
+
+}
@@ -114,6 +114,42 @@ public class BasicDiskJournalTestCase
         assertEquals(record4, listener.get(3));
     }
 
+    @Test
+    public void appendEntriesSparsePreallocation()
+            throws Exception {
+
+        File path = prepareJournalDirectory("appendEntriesSparsePreallocation");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<TestRecord> configuration = (DiskJournalConfiguration<TestRecord>) buildDiskJournalConfiguration(
+                path.toPath(), 1024 * 1024, new TestRecordReader(), new TestRecordWriter(), new FlushListener(),
+                new NamingStrategy(), new RecordIdGenerator());
+
+        configuration.setPreallocation(DiskJournalPreallocation.Sparse);
+
+        Journal<TestRecord> journal = journalSystem.getJournal("appendEntriesSparsePreallocation", configuration);
+
+        JournalEntry<TestRecord> record1 = buildTestRecord(1, "test1", (byte) 12);
+        JournalEntry<TestRecord> record2 = buildTestRecord(2, "test2", (byte) 24);
+
+        journal.appendEntry(record1.getValue(), record1.getType());
+        journal.appendEntry(record2.getValue(), record2.getType());
+
+        journal.close();
+
+        assertEquals(1024 * 1024, new File(path, "journal-1").length());
+
+        CountingFlushListener listener = new CountingFlushListener();
+        configuration.setListener(listener);
+        journal = journalSystem.getJournal("appendEntriesSparsePreallocation", configuration);
+
+        journal.close();
+
+        assertEquals(2, listener.getCount());
+        assertEquals(record1, listener.get(0));
+        assertEquals(record2, listener.get(1));
+    }
+
     @Test
     public void loadBrokenJournal()
             throws Exception {
@@ -221,6 +257,57 @@ public class BasicDiskJournalTestCase
         assertEquals(record3, listener.get(2));
     }
 
+    @Test
+    public void loadCorruptedJournal()
+            throws Exception {
+
+        File path = prepareJournalDirectory("loadCorruptedJournal");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        JournalConfiguration<TestRecord> configuration = buildDiskJournalConfiguration(path.toPath(), 1024 * 1024,
+                new TestRecordReader(), new TestRecordWriter(), new FlushListener(), new NamingStrategy(),
+                new RecordIdGenerator());
+
+        Journal<TestRecord> journal = journalSystem.getJournal("loadCorruptedJournal", configuration);
+
+        JournalEntry<TestRecord> record1 = buildTestRecord(1, "test1", (byte) 12);
+        JournalEntry<TestRecord> record2 = buildTestRecord(2, "test2", (byte) 24);
+        JournalEntry<TestRecord> record3 = buildTestRecord(4, "test3", (byte) 32);
+        JournalEntry<TestRecord> record4 = buildTestRecord(8, "test4", (byte) 48);
+
+        journal.appendEntry(record1.getValue(), record1.getType());
+        journal.appendEntry(record2.getValue(), record2.getType());
+        journal.appendEntry(record3.getValue(), record3.getType());
+        journal.appendEntry(record4.getValue(), record4.getType());
+
+        journal.close();
+
+        File file = new File(path, "journal-1");
+        RandomAccessFile raf = new RandomAccessFile(file, "rws");
+
+        // Skip the first two records and flip a payload byte of the third one, lengths stay intact
+        long pos = DiskJournal.JOURNAL_FILE_HEADER_SIZE;
+        for (int i = 0; i < 2; i++) {
+            raf.seek(pos);
+            pos += raf.readInt();
+        }
+        raf.seek(pos + 14);
+        int value = raf.read();
+        raf.seek(pos + 14);
+        raf.write(value ^ 0xFF);
+        raf.close();
+
+        CountingFlushListener listener = new CountingFlushListener();
+        configuration.setListener(listener);
+        journal = journalSystem.getJournal("loadCorruptedJournal", configuration);
+
+        journal.close();
+
+        assertEquals(2, listener.getCount());
+        assertEquals(record1, listener.get(0));
+        assertEquals(record2, listener.get(1));
+    }
+
     @Test
     public void findHolesInJournalAndAcceptIt()
             throws Exception {
@@ -26,17 +26,26 @@ import com.noctarius.replikate.JournalSystem;
 import com.noctarius.replikate.SimpleJournalEntry;
 import com.noctarius.replikate.exceptions.JournalException;
 import com.noctarius.replikate.impl.disk.BasicDiskJournalTestCase.NamingStrategy;
+import com.noctarius.replikate.impl.util.Crc32c;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.CountingFlushListener;
 import com.noctarius.replikate.impl.disk.OverflowTestCase.FlushListener;
 import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordIdGenerator;
 import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordReader;
 import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordWriter;
 import com.noctarius.replikate.spi.JournalEntry;
+import com.noctarius.replikate.spi.ReplayNotificationResult;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 
+import static org.junit.Assert.assertEquals;
+
 public class BatchProcessTestCase
         extends AbstractJournalTestCase {
 
@@ -143,6 +152,156 @@ public class BatchProcessTestCase
         batch.commit();
     }
 
+    @Test
+    public void testBatchesShareJournalFile()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testBatchesShareJournalFile");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        JournalConfiguration<byte[]> configuration = buildDiskJournalConfiguration(path.toPath(), 64 * 1024,
+                new RecordReader(), new RecordWriter(), new FlushListener(), new NamingStrategy(), new RecordIdGenerator());
+        Journal<byte[]> journal = journalSystem.getJournal("testBatchesShareJournalFile", configuration);
+
+        List<JournalEntry<byte[]>> records = new ArrayList<>();
+        for (int batchNumber = 0; batchNumber < 10; batchNumber++) {
+            JournalBatch<byte[]> batch = journal.startBatchProcess();
+            for (int i = 0; i < 3; i++) {
+                JournalEntry<byte[]> record = buildTestRecord(100, (byte) i);
+                batch.appendEntry(record.getValue(), record.getType());
+                records.add(record);
+            }
+            batch.commit();
+
+            JournalEntry<byte[]> record = buildTestRecord(100, (byte) 3);
+            journal.appendEntry(record.getValue(), record.getType());
+            records.add(record);
+        }
+
+        journal.close();
+
+        // All batches are appended to the first journal file
+        assertEquals(1, path.listFiles((dir, name) -> new NamingStrategy().isJournal(name)).length);
+
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        journal = journalSystem.getJournal("testBatchesShareJournalFile", configuration);
+        journal.close();
+
+        assertEquals(records.size(), listener.getCount());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i + 1, listener.getRecordId(i));
+            assertEquals(records.get(i), listener.get(i));
+        }
+    }
+
+    @Test
+    public void testIncompleteBatchSkipped()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testIncompleteBatchSkipped");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        JournalConfiguration<byte[]> configuration = buildDiskJournalConfiguration(path.toPath(), 64 * 1024,
+                new RecordReader(), new RecordWriter(), new FlushListener(), new NamingStrategy(), new RecordIdGenerator());
+        Journal<byte[]> journal = journalSystem.getJournal("testIncompleteBatchSkipped", configuration);
+
+        JournalEntry<byte[]> record = buildTestRecord(100, (byte) 1);
+        journal.appendEntry(record.getValue(), record.getType());
+
+        JournalBatch<byte[]> batch = journal.startBatchProcess();
+        for (int i = 0; i < 3; i++) {
+            JournalEntry<byte[]> batchRecord = buildTestRecord(100, (byte) 2);
+            batch.appendEntry(batchRecord.getValue(), batchRecord.getType());
+        }
+        batch.commit();
+
+        JournalEntry<byte[]> lastRecord = buildTestRecord(100, (byte) 3);
+        journal.appendEntry(lastRecord.getValue(), lastRecord.getType());
+
+        journal.close();
+
+        // Skip the single record, the begin marker and the batch's first record and break the second one
+        File file = new File(path, "journal-1");
+        RandomAccessFile raf = new RandomAccessFile(file, "rws");
+        long pos = DiskJournal.JOURNAL_FILE_HEADER_SIZE;
+        for (int i = 0; i < 3; i++) {
+            raf.seek(pos);
+            pos += raf.readInt();
+        }
+        raf.seek(pos + 14);
+        int value = raf.read();
+        raf.seek(pos + 14);
+        raf.write(value ^ 0xFF);
+        raf.close();
+
+        // The whole batch is skipped, the record behind it is still replayed
+        CountingFlushListener listener = new CountingFlushListener();
+        configuration.setListener(listener);
+        journal = journalSystem.getJournal("testIncompleteBatchSkipped", configuration);
+        journal.close();
+
+        assertEquals(2, listener.getCount());
+        assertEquals(record, listener.get(0));
+        assertEquals(lastRecord, listener.get(1));
+    }
+
+    @Test
+    public void testCorruptedBatchSizeStopsReading()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testCorruptedBatchSizeStopsReading");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        JournalConfiguration<byte[]> configuration = buildDiskJournalConfiguration(path.toPath(), 64 * 1024,
+                new RecordReader(), new RecordWriter(), new FlushListener(), new NamingStrategy(), new RecordIdGenerator());
+        Journal<byte[]> journal = journalSystem.getJournal("testCorruptedBatchSizeStopsReading", configuration);
+
+        JournalEntry<byte[]> record = buildTestRecord(100, (byte) 1);
+        journal.appendEntry(record.getValue(), record.getType());
+
+        JournalBatch<byte[]> batch = journal.startBatchProcess();
+        for (int i = 0; i < 3; i++) {
+            JournalEntry<byte[]> batchRecord = buildTestRecord(100, (byte) 2);
+            batch.appendEntry(batchRecord.getValue(), batchRecord.getType());
+        }
+        batch.commit();
+
+        JournalEntry<byte[]> lastRecord = buildTestRecord(100, (byte) 3);
+        journal.appendEntry(lastRecord.getValue(), lastRecord.getType());
+
+        journal.close();
+
+        // Skip the single record and let the begin marker's data size reach far behind the journal file, the marker's
+        // checksum is fixed up so that only the size is wrong
+        File file = new File(path, "journal-1");
+        RandomAccessFile raf = new RandomAccessFile(file, "rws");
+        long pos = DiskJournal.JOURNAL_FILE_HEADER_SIZE;
+        raf.seek(pos);
+        pos += raf.readInt();
+        raf.seek(pos);
+        int length = raf.readInt();
+        long recordId = raf.readLong();
+        byte type = raf.readByte();
+        byte flags = raf.readByte();
+        byte[] data = new byte[length - DiskJournal.JOURNAL_RECORD_HEADER_SIZE];
+        raf.readFully(data);
+        ByteBuffer.wrap(data).putInt(0, Integer.MAX_VALUE - 100);
+        raf.seek(pos + 14);
+        raf.write(data);
+        raf.writeInt(DiskJournalIOUtils.recordChecksum(Crc32c.newChecksum(), recordId, type, flags, data));
+        raf.close();
+
+        // Reading stops in front of the batch without failing
+        CountingFlushListener listener = new CountingFlushListener();
+        configuration.setListener(listener);
+        journal = journalSystem.getJournal("testCorruptedBatchSizeStopsReading", configuration);
+        journal.close();
+
+        assertEquals(1, listener.getCount());
+        assertEquals(record, listener.get(0));
+    }
+
     private SimpleJournalEntry<byte[]> buildTestRecord(byte type) {
         return buildTestRecord(400, type);
     }
@@ -0,0 +1,150 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.Journal;
+import com.noctarius.replikate.JournalBatch;
+import com.noctarius.replikate.JournalSystem;
+import com.noctarius.replikate.SimpleJournalEntry;
+import com.noctarius.replikate.impl.disk.BasicDiskJournalTestCase.NamingStrategy;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.CountingFlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.FlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordIdGenerator;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordReader;
+import com.noctarius.replikate.spi.JournalEntry;
+import com.noctarius.replikate.spi.JournalEntryBufferWriter;
+import com.noctarius.replikate.spi.ReplayNotificationResult;
+import org.junit.Test;
+
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class BufferWriterTestCase
+        extends AbstractJournalTestCase {
+
+    @Test
+    public void testBufferWriterAppend()
+            throws Exception {
+
+        testBufferWriter("testBufferWriterAppend", false);
+    }
+
+    @Test
+    public void testBufferWriterMappedAppend()
+            throws Exception {
+
+        testBufferWriter("testBufferWriterMappedAppend", true);
+    }
+
+    private void testBufferWriter(String name, boolean memoryMapped)
+            throws Exception {
+
+        File path = prepareJournalDirectory(name);
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildBufferWriterConfiguration(path);
+        configuration.setMemoryMapped(memoryMapped);
+        Journal<byte[]> journal = journalSystem.getJournal(name, configuration);
+
+        List<JournalEntry<byte[]>> records = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            // Larger than a pooled write buffer on index == 20, larger than a journal file on index == 40
+            int dataLength = i == 20 ? 100 * 1024 : i == 40 ? 300 * 1024 : 3000;
+            JournalEntry<byte[]> record = buildTestRecord(dataLength, (byte) i);
+            journal.appendEntry(record.getValue(), record.getType());
+            records.add(record);
+        }
+
+        JournalBatch<byte[]> batch = journal.startBatchProcess();
+        for (int i = 0; i < 5; i++) {
+            JournalEntry<byte[]> record = buildTestRecord(3000, (byte) i);
+            batch.appendEntry(record.getValue(), record.getType());
+            records.add(record);
+        }
+        batch.commit();
+
+        JournalEntry<byte[]> record = buildTestRecord(3000, (byte) 1);
+        journal.appendEntryAsync(record.getValue(), record.getType()).get(30, TimeUnit.SECONDS);
+        records.add(record);
+
+        journal.close();
+
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        journal = journalSystem.getJournal(name, configuration);
+
+        assertEquals(records.size(), listener.getCount());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(records.get(i), listener.get(i));
+        }
+
+        journal.close();
+    }
+
+    private DiskJournalConfiguration<byte[]> buildBufferWriterConfiguration(File path) {
+        return (DiskJournalConfiguration<byte[]>) buildDiskJournalConfiguration(path.toPath(), 256 * 1024,
+                new RecordReader(), new BufferRecordWriter(), new FlushListener(), new NamingStrategy(),
+                new RecordIdGenerator());
+    }
+
+    private SimpleJournalEntry<byte[]> buildTestRecord(int dataLength, byte type) {
+        Random random = new Random(-System.nanoTime());
+        byte[] data = new byte[dataLength];
+        random.nextBytes(data);
+        return new SimpleJournalEntry<>(data, type);
+    }
+
+    public static class BufferRecordWriter
+            implements JournalEntryBufferWriter<byte[]> {
+
+        @Override
+        public void writeJournalEntry(JournalEntry<byte[]> entry, ByteBuffer buffer)
+                throws IOException {
+
+            buffer.put(entry.getValue());
+        }
+
+        @Override
+        public void writeJournalEntry(JournalEntry<byte[]> entry, DataOutput out)
+                throws IOException {
+
+            throw new UnsupportedOperationException("Expected to serialize into buffers only");
+        }
+
+        @Override
+        public int estimateRecordSize(JournalEntry<byte[]> entry) {
+            // Deliberately too small to exercise growing the serialization buffer
+            return entry.getValue().length / 2;
+        }
+
+        @Override
+        public boolean isRecordSizeEstimateable() {
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.Journal;
+import com.noctarius.replikate.JournalSystem;
+import com.noctarius.replikate.SimpleJournalEntry;
+import com.noctarius.replikate.impl.disk.BasicDiskJournalTestCase.NamingStrategy;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.CountingFlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.FlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordIdGenerator;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordReader;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordWriter;
+import com.noctarius.replikate.spi.JournalEntry;
+import com.noctarius.replikate.spi.ReplayNotificationResult;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CheckpointTestCase
+        extends AbstractJournalTestCase {
+
+    @Test
+    public void testCheckpointTruncatesJournal()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testCheckpointTruncatesJournal");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildCheckpointConfiguration(path);
+        Journal<byte[]> journal = journalSystem.getJournal("testCheckpointTruncatesJournal", configuration);
+
+        @SuppressWarnings("unchecked") JournalEntry<byte[]>[] records = new JournalEntry[50];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = buildTestRecord((byte) i);
+            journal.appendEntry(records[i].getValue(), records[i].getType());
+        }
+
+        int journalFiles = countJournalFiles(path);
+        journal.checkpoint(30);
+        assertTrue(countJournalFiles(path) < journalFiles);
+
+        journal.close();
+
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        configuration.setRecordIdGenerator(new RecordIdGenerator());
+        journal = journalSystem.getJournal("testCheckpointTruncatesJournal", configuration);
+
+        assertEquals(20, listener.getCount());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(31 + i, listener.getRecordId(i));
+            assertEquals(records[30 + i], listener.get(i));
+        }
+        assertEquals(50, journal.getLastRecordId());
+
+        journal.close();
+    }
+
+    @Test
+    public void testCheckpointAllRecords()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testCheckpointAllRecords");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildCheckpointConfiguration(path);
+        Journal<byte[]> journal = journalSystem.getJournal("testCheckpointAllRecords", configuration);
+
+        for (int i = 0; i < 50; i++) {
+            JournalEntry<byte[]> record = buildTestRecord((byte) i);
+            journal.appendEntry(record.getValue(), record.getType());
+        }
+
+        journal.checkpoint(50);
+
+        // Only the current journal file is left
+        assertEquals(1, countJournalFiles(path));
+
+        journal.close();
+
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        configuration.setRecordIdGenerator(new RecordIdGenerator());
+        journal = journalSystem.getJournal("testCheckpointAllRecords", configuration);
+
+        // Nothing to replay but recordIds have to continue after the checkpoint
+        assertEquals(0, listener.getCount());
+        assertEquals(50, journal.getLastRecordId());
+        assertEquals(0, countJournalFiles(path));
+
+        journal.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCheckpointAheadOfJournalRejected()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testCheckpointAheadOfJournalRejected");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildCheckpointConfiguration(path);
+        Journal<byte[]> journal = journalSystem.getJournal("testCheckpointAheadOfJournalRejected", configuration);
+
+        for (int i = 0; i < 10; i++) {
+            JournalEntry<byte[]> record = buildTestRecord((byte) i);
+            journal.appendEntry(record.getValue(), record.getType());
+        }
+
+        try {
+            journal.checkpoint(11);
+        } finally {
+            assertFalse(new File(path, DiskJournal.CHECKPOINT_FILE_NAME).exists());
+            journal.close();
+        }
+    }
+
+    private int countJournalFiles(File path) {
+        return path.listFiles((dir, name) -> new NamingStrategy().isJournal(name)).length;
+    }
+
+    private DiskJournalConfiguration<byte[]> buildCheckpointConfiguration(File path) {
+        return (DiskJournalConfiguration<byte[]>) buildDiskJournalConfiguration(path.toPath(), 4096, new RecordReader(),
+                new RecordWriter(), new FlushListener(), new NamingStrategy(), new RecordIdGenerator());
+    }
+
+    private SimpleJournalEntry<byte[]> buildTestRecord(byte type) {
+        Random random = new Random(-System.nanoTime());
+        byte[] data = new byte[400];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) random.nextInt(255);
+        }
+        return new SimpleJournalEntry<>(data, type);
+    }
+
+}
@@ -0,0 +1,208 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.Journal;
+import com.noctarius.replikate.JournalBatch;
+import com.noctarius.replikate.JournalSystem;
+import com.noctarius.replikate.SimpleJournalEntry;
+import com.noctarius.replikate.impl.codec.DeflateCompressionCodec;
+import com.noctarius.replikate.impl.codec.LzCompressionCodec;
+import com.noctarius.replikate.impl.disk.BasicDiskJournalTestCase.NamingStrategy;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.CountingFlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.FlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordIdGenerator;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordReader;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordWriter;
+import com.noctarius.replikate.spi.JournalCompressionCodec;
+import com.noctarius.replikate.spi.JournalEntry;
+import com.noctarius.replikate.spi.ReplayNotificationResult;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompressionTestCase
+        extends AbstractJournalTestCase {
+
+    @Test
+    public void testDeflateCompression()
+            throws Exception {
+
+        testCompression("testDeflateCompression", new DeflateCompressionCodec());
+    }
+
+    @Test
+    public void testLzCompression()
+            throws Exception {
+
+        testCompression("testLzCompression", new LzCompressionCodec());
+    }
+
+    @Test
+    public void testLzCompressionRoundTrip()
+            throws Exception {
+
+        LzCompressionCodec codec = new LzCompressionCodec();
+
+        byte[] longRun = new byte[100000];
+        byte[] random = new byte[5000];
+        new Random(-System.nanoTime()).nextBytes(random);
+
+        byte[][] inputs = {new byte[0], new byte[]{1, 2, 3}, longRun, random, buildCompressibleData(7).getBytes(
+                StandardCharsets.UTF_8)};
+
+        for (byte[] input : inputs) {
+            byte[] compressed = codec.compress(input);
+            assertArrayEquals(input, codec.decompress(ByteBuffer.wrap(compressed)));
+        }
+        assertTrue(codec.compress(longRun).length < 1000);
+    }
+
+    @Test
+    public void testBatchBlockCompression()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testBatchBlockCompression");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildCompressionConfiguration(path);
+        configuration.setCompressionCodec(new LzCompressionCodec());
+        configuration.setBatchCompression(true);
+        Journal<byte[]> journal = journalSystem.getJournal("testBatchBlockCompression", configuration);
+
+        List<JournalEntry<byte[]>> records = new ArrayList<>();
+        for (int batchNumber = 0; batchNumber < 3; batchNumber++) {
+            JournalBatch<byte[]> batch = journal.startBatchProcess();
+            for (int i = 0; i < 200; i++) {
+                JournalEntry<byte[]> record = buildSmallRecord(batchNumber * 200 + i);
+                batch.appendEntry(record.getValue(), record.getType());
+                records.add(record);
+            }
+            batch.commit();
+
+            JournalEntry<byte[]> record = buildCompressibleRecord(batchNumber);
+            journal.appendEntry(record.getValue(), record.getType());
+            records.add(record);
+        }
+
+        // 200 entries of 60 bytes each do not fit into a single journal file uncompressed, compressed blocks are
+        // appended to the regular journal files instead of getting a batch journal file of their own
+        File[] journalFiles = path.listFiles((dir, fileName) -> new NamingStrategy().isJournal(fileName));
+        assertTrue(journalFiles.length <= 3);
+        for (File journalFile : journalFiles) {
+            assertEquals(4096, journalFile.length());
+        }
+
+        // Checkpoint in the middle of the second block
+        journal.checkpoint(300);
+        journal.close();
+
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        journal = journalSystem.getJournal("testBatchBlockCompression", configuration);
+
+        assertEquals(records.size() - 300, listener.getCount());
+        for (int i = 0; i < listener.getCount(); i++) {
+            assertEquals(301 + i, listener.getRecordId(i));
+            assertEquals(records.get(300 + i), listener.get(i));
+        }
+
+        journal.close();
+    }
+
+    private void testCompression(String name, JournalCompressionCodec codec)
+            throws Exception {
+
+        File path = prepareJournalDirectory(name);
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildCompressionConfiguration(path);
+        configuration.setCompressionCodec(codec);
+        Journal<byte[]> journal = journalSystem.getJournal(name, configuration);
+
+        @SuppressWarnings("unchecked") JournalEntry<byte[]>[] records = new JournalEntry[50];
+        for (int i = 0; i < records.length; i++) {
+            // Every tenth entry is not compressible and stored as it is
+            records[i] = i % 10 == 0 ? buildRandomRecord((byte) i) : buildCompressibleRecord(i);
+            journal.appendEntry(records[i].getValue(), records[i].getType());
+        }
+
+        journal.close();
+
+        // 50 entries of about 1000 bytes would need at least 13 journal files uncompressed
+        int journalFiles = path.listFiles((dir, fileName) -> new NamingStrategy().isJournal(fileName)).length;
+        assertTrue(journalFiles < 10);
+
+        // Built-in codecs are always known, even if compression is not configured anymore
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        configuration.setCompressionCodec(null);
+        journal = journalSystem.getJournal(name, configuration);
+
+        assertEquals(records.length, listener.getCount());
+        for (int i = 0; i < records.length; i++) {
+            assertEquals(records[i], listener.get(i));
+        }
+
+        journal.close();
+    }
+
+    private DiskJournalConfiguration<byte[]> buildCompressionConfiguration(File path) {
+        return (DiskJournalConfiguration<byte[]>) buildDiskJournalConfiguration(path.toPath(), 4096, new RecordReader(),
+                new RecordWriter(), new FlushListener(), new NamingStrategy(), new RecordIdGenerator());
+    }
+
+    private SimpleJournalEntry<byte[]> buildCompressibleRecord(int id) {
+        return new SimpleJournalEntry<>(buildCompressibleData(id).getBytes(StandardCharsets.UTF_8), (byte) id);
+    }
+
+    private String buildCompressibleData(int id) {
+        StringBuilder builder = new StringBuilder("[");
+        while (builder.length() < 1000) {
+            builder.append("{\"id\":").append(id).append(",\"name\":\"entry-").append(id);
+            builder.append("\",\"state\":\"ACTIVE\",\"tags\":[\"journal\",\"replay\"]},");
+        }
+        return builder.append("]").toString();
+    }
+
+    private SimpleJournalEntry<byte[]> buildSmallRecord(int id) {
+        String data = "{\"id\":" + id + ",\"state\":\"ACTIVE\",\"owner\":\"replikate\",\"retries\":0}";
+        while (data.length() < 60) {
+            data += " ";
+        }
+        return new SimpleJournalEntry<>(data.getBytes(StandardCharsets.UTF_8), (byte) 1);
+    }
+
+    private SimpleJournalEntry<byte[]> buildRandomRecord(byte type) {
+        Random random = new Random(-System.nanoTime());
+        byte[] data = new byte[400];
+        random.nextBytes(data);
+        return new SimpleJournalEntry<>(data, type);
+    }
+
+}
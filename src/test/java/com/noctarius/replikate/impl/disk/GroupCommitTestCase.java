@@ -0,0 +1,331 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.Journal;
+import com.noctarius.replikate.JournalRecord;
+import com.noctarius.replikate.JournalSystem;
+import com.noctarius.replikate.SimpleJournalEntry;
+import com.noctarius.replikate.exceptions.JournalException;
+import com.noctarius.replikate.impl.disk.BasicDiskJournalTestCase.NamingStrategy;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.CountingFlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.FlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordIdGenerator;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordReader;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordWriter;
+import com.noctarius.replikate.spi.JournalEntry;
+import com.noctarius.replikate.spi.ReplayNotificationResult;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GroupCommitTestCase
+        extends AbstractJournalTestCase {
+
+    @Test
+    public void testConcurrentGroupCommit()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testConcurrentGroupCommit");
+
+        final int threads = 8;
+        final int entriesPerThread = 50;
+
+        final CountDownLatch committed = new CountDownLatch(threads * entriesPerThread);
+        FlushListener flushListener = new FlushListener() {
+
+            @Override
+            public void onCommit(JournalRecord<byte[]> record) {
+                committed.countDown();
+            }
+        };
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildGroupCommitConfiguration(path, flushListener);
+        final Journal<byte[]> journal = journalSystem.getJournal("testConcurrentGroupCommit", configuration);
+
+        final CountDownLatch latch = new CountDownLatch(threads);
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executorService.execute(() -> {
+                for (int i = 0; i < entriesPerThread; i++) {
+                    JournalEntry<byte[]> record = buildTestRecord((byte) i);
+                    journal.appendEntry(record.getValue(), record.getType());
+                }
+                latch.countDown();
+            });
+        }
+
+        assertTrue(latch.await(60, TimeUnit.SECONDS));
+        assertTrue(committed.await(60, TimeUnit.SECONDS));
+        executorService.shutdown();
+        journal.close();
+        journalSystem.shutdown();
+
+        assertEquals(threads * entriesPerThread, journal.getLastRecordId());
+
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        Journal<byte[]> replayed = JournalSystem.newJournalSystem().getJournal("testConcurrentGroupCommit", configuration);
+
+        assertEquals(threads * entriesPerThread, listener.getCount());
+
+        replayed.close();
+    }
+
+    @Test
+    public void testRingBufferIngest()
+            throws Exception {
+
+        for (DiskJournalWaitStrategy waitStrategy : DiskJournalWaitStrategy.values()) {
+            String name = "testRingBufferIngest" + waitStrategy;
+            File path = prepareJournalDirectory(name);
+
+            final int threads = 8;
+            final int entriesPerThread = 50;
+
+            JournalSystem journalSystem = JournalSystem.newJournalSystem();
+            DiskJournalConfiguration<byte[]> configuration = (DiskJournalConfiguration<byte[]>) buildDiskJournalConfiguration(
+                    path.toPath(), 1024, new RecordReader(), new RecordWriter(), new FlushListener(), new NamingStrategy(),
+                    new RecordIdGenerator());
+
+            // Small enough for appending threads to wait for free slots
+            configuration.setRingBufferSize(16);
+            configuration.setWaitStrategy(waitStrategy);
+
+            final Journal<byte[]> journal = journalSystem.getJournal(name, configuration);
+
+            final CountDownLatch latch = new CountDownLatch(threads);
+            ExecutorService executorService = Executors.newFixedThreadPool(threads);
+            for (int t = 0; t < threads; t++) {
+                executorService.execute(() -> {
+                    for (int i = 0; i < entriesPerThread; i++) {
+                        JournalEntry<byte[]> record = buildTestRecord((byte) i);
+                        journal.appendEntry(record.getValue(), record.getType());
+                    }
+                    latch.countDown();
+                });
+            }
+
+            assertTrue(latch.await(60, TimeUnit.SECONDS));
+            executorService.shutdown();
+            journal.close();
+
+            assertEquals(threads * entriesPerThread, journal.getLastRecordId());
+
+            CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+            configuration.setListener(listener);
+            Journal<byte[]> replayed = journalSystem.getJournal(name, configuration);
+
+            assertEquals(threads * entriesPerThread, listener.getCount());
+
+            replayed.close();
+            journalSystem.shutdown();
+        }
+    }
+
+    @Test
+    public void testGroupCommitOverflow()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testGroupCommitOverflow");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildGroupCommitConfiguration(path, new FlushListener());
+        Journal<byte[]> journal = journalSystem.getJournal("testGroupCommitOverflow", configuration);
+
+        @SuppressWarnings("unchecked") JournalEntry<byte[]>[] records = new JournalEntry[6];
+        for (int i = 0; i < records.length; i++) {
+            // Generate special overflow entry on index == 3
+            records[i] = buildTestRecord(i == 3 ? 1024 : 400, (byte) i);
+            journal.appendEntry(records[i].getValue(), records[i].getType());
+        }
+
+        journal.close();
+
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        journal = journalSystem.getJournal("testGroupCommitOverflow", configuration);
+
+        assertEquals(records.length, listener.getCount());
+        for (int i = 0; i < records.length; i++) {
+            assertEquals(records[i], listener.get(i));
+        }
+
+        journal.close();
+    }
+
+    @Test
+    public void testRingBufferIteration()
+            throws Exception {
+
+        DiskJournalRingBuffer<Integer> ringBuffer = new DiskJournalRingBuffer<>(8, DiskJournalWaitStrategy.Park);
+        for (int i = 0; i < 6; i++) {
+            ringBuffer.put(i);
+        }
+        assertEquals(Integer.valueOf(0), ringBuffer.poll());
+        assertEquals(Integer.valueOf(1), ringBuffer.poll());
+
+        // Wrapping around the end of the buffer
+        for (int i = 6; i < 10; i++) {
+            ringBuffer.put(i);
+        }
+
+        assertEquals(Arrays.asList(2, 3, 4, 5, 6, 7, 8, 9), new ArrayList<>(ringBuffer));
+        assertTrue(ringBuffer.contains(9));
+        assertFalse(ringBuffer.contains(1));
+        assertEquals("[2, 3, 4, 5, 6, 7, 8, 9]", ringBuffer.toString());
+
+        List<Integer> drained = new ArrayList<>();
+        ringBuffer.drainTo(drained);
+        assertEquals(8, drained.size());
+        assertFalse(ringBuffer.iterator().hasNext());
+    }
+
+    @Test
+    public void testCloseWhileAppending()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testCloseWhileAppending");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildGroupCommitConfiguration(path, new FlushListener());
+
+        // A bounded queue keeps asynchronous appenders from piling up entries in front of the synchronous ones
+        configuration.setRingBufferSize(64);
+        Journal<byte[]> journal = journalSystem.getJournal("testCloseWhileAppending", configuration);
+
+        final int threads = 4;
+        final CountDownLatch submitted = new CountDownLatch(threads);
+        final AtomicBoolean closed = new AtomicBoolean();
+        List<Future<List<CompletableFuture<JournalRecord<byte[]>>>>> appenders = new ArrayList<>();
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            final boolean async = i % 2 == 0;
+            appenders.add(executorService.submit(() -> {
+                List<CompletableFuture<JournalRecord<byte[]>>> futures = new ArrayList<>();
+                int appended = 0;
+                while (!closed.get()) {
+                    JournalEntry<byte[]> record = buildTestRecord((byte) 1);
+                    if (async) {
+                        futures.add(journal.appendEntryAsync(record.getValue(), record.getType()));
+                    } else {
+                        // Synchronous appends must never hang, appends after close are ignored
+                        journal.appendEntry(record.getValue(), record.getType());
+                    }
+                    if (++appended == 25) {
+                        submitted.countDown();
+                    }
+                }
+                return futures;
+            }));
+        }
+
+        // Every appender submitted some entries already and keeps appending while the journal is closed
+        assertTrue(submitted.await(30, TimeUnit.SECONDS));
+        journal.close();
+        closed.set(true);
+
+        // Appends racing with close either fail or are flushed, none of them is left behind
+        for (Future<List<CompletableFuture<JournalRecord<byte[]>>>> appender : appenders) {
+            for (CompletableFuture<JournalRecord<byte[]>> future : appender.get(30, TimeUnit.SECONDS)) {
+                try {
+                    future.get(30, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof JournalException);
+                }
+            }
+        }
+        executorService.shutdown();
+    }
+
+    @Test
+    public void testListenerFailureCompletesGroup()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testListenerFailureCompletesGroup");
+
+        DiskJournalConfiguration<byte[]> configuration = buildGroupCommitConfiguration(path, new FlushListener());
+
+        // Announcing commits to the listener fails since its executor is already shut down
+        ExecutorService listenerExecutorService = Executors.newSingleThreadExecutor();
+        listenerExecutorService.shutdown();
+        DiskJournal<byte[]> journal = (DiskJournal<byte[]>) new DiskJournalFactory<byte[]>().buildJournal(
+                "testListenerFailureCompletesGroup", configuration, listenerExecutorService);
+
+        CompletableFuture<JournalRecord<byte[]>> future = null;
+        for (int i = 0; i < 3; i++) {
+            JournalEntry<byte[]> record = buildTestRecord((byte) i);
+            future = journal.appendEntryAsync(record.getValue(), record.getType());
+        }
+
+        // Synchronous appends of the same group must not wait forever
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        JournalEntry<byte[]> record = buildTestRecord((byte) 3);
+        executorService.submit(() -> journal.appendEntry(record.getValue(), record.getType())).get(30, TimeUnit.SECONDS);
+        try {
+            future.get(30, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof JournalException);
+        }
+
+        executorService.shutdown();
+        journal.close();
+    }
+
+    private DiskJournalConfiguration<byte[]> buildGroupCommitConfiguration(File path, FlushListener listener) {
+        DiskJournalConfiguration<byte[]> configuration = (DiskJournalConfiguration<byte[]>) buildDiskJournalConfiguration(
+                path.toPath(), 1024, new RecordReader(), new RecordWriter(), listener, new NamingStrategy(),
+                new RecordIdGenerator());
+
+        configuration.setGroupCommit(true);
+        configuration.setGroupCommitWindowMicros(500);
+        return configuration;
+    }
+
+    private SimpleJournalEntry<byte[]> buildTestRecord(byte type) {
+        return buildTestRecord(100, type);
+    }
+
+    private SimpleJournalEntry<byte[]> buildTestRecord(int dataLength, byte type) {
+        Random random = new Random(-System.nanoTime());
+        byte[] data = new byte[dataLength];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) random.nextInt(255);
+        }
+        return new SimpleJournalEntry<>(data, type);
+    }
+
+}
@@ -0,0 +1,231 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.Journal;
+import com.noctarius.replikate.JournalBatch;
+import com.noctarius.replikate.JournalCursor;
+import com.noctarius.replikate.JournalRecord;
+import com.noctarius.replikate.JournalSystem;
+import com.noctarius.replikate.SimpleJournalEntry;
+import com.noctarius.replikate.impl.disk.BasicDiskJournalTestCase.NamingStrategy;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.CountingFlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.FlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordIdGenerator;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordReader;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordWriter;
+import com.noctarius.replikate.spi.JournalEntry;
+import com.noctarius.replikate.spi.ReplayNotificationResult;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JournalCursorTestCase
+        extends AbstractJournalTestCase {
+
+    @Test
+    public void testCursorFollowsAppends()
+            throws Exception {
+
+        testCursorFollowsAppends("testCursorFollowsAppends", false);
+    }
+
+    @Test
+    public void testCursorFollowsAppendsMemoryMapped()
+            throws Exception {
+
+        testCursorFollowsAppends("testCursorFollowsAppendsMemoryMapped", true);
+    }
+
+    @Test
+    public void testCursorOpenedAtRecordId()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testCursorOpenedAtRecordId");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildCursorConfiguration(path);
+        Journal<byte[]> journal = journalSystem.getJournal("testCursorOpenedAtRecordId", configuration);
+
+        List<JournalEntry<byte[]>> records = new ArrayList<>();
+        appendRecords(journal, records);
+        journal.close();
+
+        // Journal files read by the replay are sealed, the cursor continues with the new journal file
+        configuration.setListener(new CountingFlushListener(ReplayNotificationResult.Continue));
+        journal = journalSystem.getJournal("testCursorOpenedAtRecordId", configuration);
+
+        try (JournalCursor<byte[]> cursor = journal.openCursor(40)) {
+            assertRecords(cursor, records, 40, records.size());
+            assertNull(cursor.poll());
+
+            appendRecords(journal, records);
+            assertRecords(cursor, records, records.size() / 2 + 1, records.size());
+            assertNull(cursor.poll(10, TimeUnit.MILLISECONDS));
+            assertEquals(records.size() + 1, cursor.getNextRecordId());
+        }
+
+        journal.close();
+    }
+
+    @Test
+    public void testCursorFollowsOversizedBatch()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testCursorFollowsOversizedBatch");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildCursorConfiguration(path);
+        Journal<byte[]> journal = journalSystem.getJournal("testCursorFollowsOversizedBatch", configuration);
+
+        try (JournalCursor<byte[]> cursor = journal.openCursor(1)) {
+            List<JournalEntry<byte[]>> records = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                JournalEntry<byte[]> record = buildTestRecord(100, (byte) i);
+                journal.appendEntry(record.getValue(), record.getType());
+                records.add(record);
+            }
+            assertRecords(cursor, records, 1, records.size());
+
+            // A batch larger than a journal file gets a journal file of its own, the previous one has to be sealed
+            JournalBatch<byte[]> batch = journal.startBatchProcess();
+            for (int i = 0; i < 5; i++) {
+                JournalEntry<byte[]> record = buildTestRecord(1000, (byte) i);
+                batch.appendEntry(record.getValue(), record.getType());
+                records.add(record);
+            }
+            batch.commit();
+
+            for (int i = 0; i < 3; i++) {
+                JournalEntry<byte[]> record = buildTestRecord(100, (byte) i);
+                journal.appendEntry(record.getValue(), record.getType());
+                records.add(record);
+            }
+
+            assertRecords(cursor, records, 4, records.size());
+            assertNull(cursor.poll());
+        }
+
+        journal.close();
+    }
+
+    private void testCursorFollowsAppends(String name, boolean memoryMapped)
+            throws Exception {
+
+        File path = prepareJournalDirectory(name);
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildCursorConfiguration(path);
+        configuration.setMemoryMapped(memoryMapped);
+        Journal<byte[]> journal = journalSystem.getJournal(name, configuration);
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try (JournalCursor<byte[]> cursor = journal.openCursor(1)) {
+            assertNull(cursor.poll());
+
+            // The consumer follows while records are still appended
+            Future<List<JournalRecord<byte[]>>> consumer = executorService.submit(() -> {
+                List<JournalRecord<byte[]>> consumed = new ArrayList<>();
+                while (consumed.size() < 105) {
+                    JournalRecord<byte[]> record = cursor.poll(10, TimeUnit.SECONDS);
+                    if (record == null) {
+                        break;
+                    }
+                    consumed.add(record);
+                }
+                return consumed;
+            });
+
+            List<JournalEntry<byte[]>> records = new ArrayList<>();
+            appendRecords(journal, records);
+
+            List<JournalRecord<byte[]>> consumed = consumer.get(30, TimeUnit.SECONDS);
+            assertEquals(records.size(), consumed.size());
+            for (int i = 0; i < consumed.size(); i++) {
+                assertEquals(i + 1, consumed.get(i).getRecordId());
+                assertEquals(records.get(i), consumed.get(i).getJournalEntry());
+            }
+            assertNull(cursor.poll());
+
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        journal.close();
+    }
+
+    private void assertRecords(JournalCursor<byte[]> cursor, List<JournalEntry<byte[]>> records, int fromRecordId,
+                               int toRecordId)
+            throws Exception {
+
+        for (int recordId = fromRecordId; recordId <= toRecordId; recordId++) {
+            JournalRecord<byte[]> record = cursor.poll(10, TimeUnit.SECONDS);
+            assertEquals(recordId, record.getRecordId());
+            assertEquals(records.get(recordId - 1), record.getJournalEntry());
+        }
+    }
+
+    private void appendRecords(Journal<byte[]> journal, List<JournalEntry<byte[]>> records)
+            throws Exception {
+
+        for (int i = 0; i < 100; i++) {
+            if (i == 30) {
+                JournalBatch<byte[]> batch = journal.startBatchProcess();
+                for (int j = 0; j < 5; j++) {
+                    JournalEntry<byte[]> record = buildTestRecord(100, (byte) j);
+                    batch.appendEntry(record.getValue(), record.getType());
+                    records.add(record);
+                }
+                batch.commit();
+            }
+
+            // A single record larger than a journal file is split into fragments
+            JournalEntry<byte[]> record = buildTestRecord(i == 50 ? 10000 : 100, (byte) i);
+            journal.appendEntry(record.getValue(), record.getType());
+            records.add(record);
+        }
+    }
+
+    private DiskJournalConfiguration<byte[]> buildCursorConfiguration(File path) {
+        DiskJournalConfiguration<byte[]> configuration = (DiskJournalConfiguration<byte[]>) buildDiskJournalConfiguration(
+                path.toPath(), 4096, new RecordReader(), new RecordWriter(), new FlushListener(), new NamingStrategy(),
+                new RecordIdGenerator());
+
+        configuration.setRecordIndexInterval(8);
+        return configuration;
+    }
+
+    private SimpleJournalEntry<byte[]> buildTestRecord(int dataLength, byte type) {
+        Random random = new Random(-System.nanoTime());
+        byte[] data = new byte[dataLength];
+        random.nextBytes(data);
+        return new SimpleJournalEntry<>(data, type);
+    }
+
+}
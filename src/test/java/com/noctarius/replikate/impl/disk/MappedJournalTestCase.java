@@ -0,0 +1,218 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.Journal;
+import com.noctarius.replikate.JournalBatch;
+import com.noctarius.replikate.JournalSystem;
+import com.noctarius.replikate.SimpleJournalEntry;
+import com.noctarius.replikate.impl.disk.BasicDiskJournalTestCase.NamingStrategy;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.CountingFlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.FlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordIdGenerator;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordReader;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordWriter;
+import com.noctarius.replikate.spi.JournalEntry;
+import com.noctarius.replikate.spi.ReplayNotificationResult;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MappedJournalTestCase
+        extends AbstractJournalTestCase {
+
+    @Test
+    public void testMappedAppendAndOverflow()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testMappedAppendAndOverflow");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildMappedConfiguration(path);
+        Journal<byte[]> journal = journalSystem.getJournal("testMappedAppendAndOverflow", configuration);
+
+        @SuppressWarnings("unchecked") JournalEntry<byte[]>[] records = new JournalEntry[20];
+        for (int i = 0; i < records.length; i++) {
+            // Generate special overflow entry on index == 7
+            records[i] = buildTestRecord(i == 7 ? 2048 : 300, (byte) i);
+            journal.appendEntry(records[i].getValue(), records[i].getType());
+        }
+
+        journal.close();
+
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        journal = journalSystem.getJournal("testMappedAppendAndOverflow", configuration);
+
+        assertEquals(records.length, listener.getCount());
+        for (int i = 0; i < records.length; i++) {
+            assertEquals(records[i], listener.get(i));
+        }
+
+        journal.close();
+    }
+
+    @Test
+    public void testMappedBatchAndAppendAfterReplay()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testMappedBatchAndAppendAfterReplay");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildMappedConfiguration(path);
+        Journal<byte[]> journal = journalSystem.getJournal("testMappedBatchAndAppendAfterReplay", configuration);
+
+        JournalEntry<byte[]> record1 = buildTestRecord(300, (byte) 1);
+        JournalEntry<byte[]> record2 = buildTestRecord(300, (byte) 2);
+        JournalEntry<byte[]> record3 = buildTestRecord(300, (byte) 3);
+
+        JournalBatch<byte[]> batch = journal.startBatchProcess();
+        batch.appendEntry(record1.getValue(), record1.getType());
+        batch.appendEntry(record2.getValue(), record2.getType());
+        batch.commit();
+
+        journal.close();
+
+        // Reopen, replay and continue appending to a fresh journal file
+        journal = journalSystem.getJournal("testMappedBatchAndAppendAfterReplay", configuration);
+        journal.appendEntry(record3.getValue(), record3.getType());
+        journal.close();
+
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        journal = journalSystem.getJournal("testMappedBatchAndAppendAfterReplay", configuration);
+
+        assertEquals(3, listener.getCount());
+        assertEquals(record1, listener.get(0));
+        assertEquals(record2, listener.get(1));
+        assertEquals(record3, listener.get(2));
+
+        journal.close();
+    }
+
+    @Test
+    public void testMappedJournalFileLargerThan2GB()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testMappedJournalFileLargerThan2GB");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildMappedConfiguration(path);
+        configuration.setMaxLogFileSize(3L * 1024 * 1024 * 1024);
+        configuration.setPreallocation(DiskJournalPreallocation.Sparse);
+        Journal<byte[]> journal = journalSystem.getJournal("testMappedJournalFileLargerThan2GB", configuration);
+
+        @SuppressWarnings("unchecked") JournalEntry<byte[]>[] records = new JournalEntry[20];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = buildTestRecord(300, (byte) i);
+            journal.appendEntry(records[i].getValue(), records[i].getType());
+        }
+
+        journal.close();
+
+        File[] journalFiles = path.listFiles((dir, fileName) -> new NamingStrategy().isJournal(fileName));
+        assertEquals(1, journalFiles.length);
+        try (RandomAccessFile raf = new RandomAccessFile(journalFiles[0], "r")) {
+            assertEquals(3L * 1024 * 1024 * 1024, DiskJournalIOUtils.readHeader(raf).getMaxLogFileSize());
+        }
+
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        journal = journalSystem.getJournal("testMappedJournalFileLargerThan2GB", configuration);
+
+        assertEquals(records.length, listener.getCount());
+        for (int i = 0; i < records.length; i++) {
+            assertEquals(records[i], listener.get(i));
+        }
+
+        journal.close();
+    }
+
+    @Test
+    public void testSegmentCursorMappingWindows()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testSegmentCursorMappingWindows");
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        DiskJournalConfiguration<byte[]> configuration = buildMappedConfiguration(path);
+        configuration.setMaxLogFileSize(64 * 1024);
+        DiskJournal<byte[]> journal = (DiskJournal<byte[]>) new DiskJournalFactory<byte[]>().buildJournal(
+                "testSegmentCursorMappingWindows", configuration, executorService);
+
+        @SuppressWarnings("unchecked") JournalEntry<byte[]>[] records = new JournalEntry[20];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = buildTestRecord(300, (byte) i);
+            if (i % 5 == 0) {
+                JournalBatch<byte[]> batch = journal.startBatchProcess();
+                batch.appendEntry(records[i].getValue(), records[i].getType());
+                batch.commit();
+            } else {
+                journal.appendEntry(records[i].getValue(), records[i].getType());
+            }
+        }
+
+        journal.close();
+
+        File[] journalFiles = path.listFiles((dir, fileName) -> new NamingStrategy().isJournal(fileName));
+        assertEquals(1, journalFiles.length);
+
+        // Windows smaller than a single record have to be extended to the record's length
+        for (long windowSize : new long[]{100, 512, 1000}) {
+            try (DiskJournalSegmentCursor<byte[]> cursor = new DiskJournalSegmentCursor<>(journal, journalFiles[0],
+                    windowSize)) {
+
+                for (JournalEntry<byte[]> record : records) {
+                    assertTrue(cursor.hasNext());
+                    assertEquals(record, cursor.next().getJournalEntry());
+                }
+                assertFalse(cursor.hasNext());
+            }
+        }
+
+        executorService.shutdown();
+    }
+
+    private DiskJournalConfiguration<byte[]> buildMappedConfiguration(File path) {
+        DiskJournalConfiguration<byte[]> configuration = (DiskJournalConfiguration<byte[]>) buildDiskJournalConfiguration(
+                path.toPath(), 4096, new RecordReader(), new RecordWriter(), new FlushListener(), new NamingStrategy(),
+                new RecordIdGenerator());
+
+        configuration.setMemoryMapped(true);
+        return configuration;
+    }
+
+    private SimpleJournalEntry<byte[]> buildTestRecord(int dataLength, byte type) {
+        Random random = new Random(-System.nanoTime());
+        byte[] data = new byte[dataLength];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) random.nextInt(255);
+        }
+        return new SimpleJournalEntry<>(data, type);
+    }
+
+}
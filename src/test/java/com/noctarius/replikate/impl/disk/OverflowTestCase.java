@@ -38,11 +38,20 @@ import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class OverflowTestCase
         extends AbstractJournalTestCase {
@@ -120,6 +129,282 @@ public class OverflowTestCase
         }
     }
 
+    @Test
+    public void testPreallocatedFileOverflow()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testPreallocatedFileOverflow");
+
+        RecordIdGenerator recordIdGenerator = new RecordIdGenerator();
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = (DiskJournalConfiguration<byte[]>) buildDiskJournalConfiguration(
+                path.toPath(), 4096, new RecordReader(), new RecordWriter(), new FlushListener(), new NamingStrategy(),
+                recordIdGenerator);
+
+        configuration.setPreallocatedJournalFiles(2);
+
+        Journal<byte[]> journal = journalSystem.getJournal("testPreallocatedFileOverflow", configuration);
+
+        @SuppressWarnings("unchecked") JournalEntry<byte[]>[] records = new JournalEntry[50];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = buildTestRecord((byte) i);
+            journal.appendEntry(records[i].getValue(), records[i].getType());
+        }
+
+        journal.close();
+
+        // Unused preallocated journal files have to be removed on close
+        assertEquals(0, path.listFiles((dir, name) -> {
+            if (new File(dir, name).isDirectory()) {
+                return false;
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(new File(dir, name), "r")) {
+                DiskJournalFileHeader header = DiskJournalIOUtils.readHeader(raf);
+                raf.seek(header.getFirstDataOffset());
+                return raf.readInt() == 0;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }).length);
+
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        journal = journalSystem.getJournal("testPreallocatedFileOverflow", configuration);
+
+        assertEquals(records.length, listener.count);
+
+        for (int i = 0; i < records.length; i++) {
+            JournalEntry<byte[]> result = listener.get(i);
+            assertEquals(records[i], result);
+        }
+
+        journal.close();
+    }
+
+    @Test
+    public void testPreallocatedAndInlineFileOrder()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testPreallocatedAndInlineFileOrder");
+
+        RecordIdGenerator recordIdGenerator = new RecordIdGenerator();
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = (DiskJournalConfiguration<byte[]>) buildDiskJournalConfiguration(
+                path.toPath(), 1024 * 1024, new RecordReader(), new RecordWriter(), new FlushListener(),
+                new NamingStrategy(), recordIdGenerator);
+
+        // A single zero filled journal file cannot keep up, so inline created journal files are mixed in
+        configuration.setPreallocatedJournalFiles(1);
+        configuration.setPreallocation(DiskJournalPreallocation.ZeroFill);
+
+        Journal<byte[]> journal = journalSystem.getJournal("testPreallocatedAndInlineFileOrder", configuration);
+
+        @SuppressWarnings("unchecked") JournalEntry<byte[]>[] records = new JournalEntry[300];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = buildTestRecord(100 * 1024, (byte) i);
+            journal.appendEntry(records[i].getValue(), records[i].getType());
+        }
+
+        // Reading relies on logNumbers following the recordIds
+        List<JournalRecord<byte[]>> range = journal.readRange(1, records.length);
+        assertEquals(records.length, range.size());
+        for (int i = 0; i < range.size(); i++) {
+            assertEquals(i + 1, range.get(i).getRecordId());
+        }
+
+        journal.close();
+
+        long lastLogNumber = -1;
+        long lastRecordId = 0;
+        File[] files = path.listFiles(File::isFile);
+        Arrays.sort(files, (f1, f2) -> Long.compare(readLogNumber(f1), readLogNumber(f2)));
+        for (File file : files) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                DiskJournalFileHeader header = DiskJournalIOUtils.readHeader(raf);
+                raf.seek(header.getFirstDataOffset() + 4);
+                long firstRecordId = raf.readLong();
+
+                assertTrue(header.getLogNumber() > lastLogNumber);
+                assertTrue(firstRecordId > lastRecordId);
+                lastLogNumber = header.getLogNumber();
+                lastRecordId = firstRecordId;
+            }
+        }
+    }
+
+    @Test
+    public void testRecycledFileOverflow()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testRecycledFileOverflow");
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = (DiskJournalConfiguration<byte[]>) buildDiskJournalConfiguration(
+                path.toPath(), 4096, new RecordReader(), new RecordWriter(), new FlushListener(), new NamingStrategy(),
+                new RecordIdGenerator());
+
+        // Without preallocation every rollover takes its journal file straight from the pool
+        configuration.setMaxRecycledJournalFiles(2);
+
+        DiskJournal<byte[]> journal = (DiskJournal<byte[]>) new DiskJournalFactory<byte[]>().buildJournal(
+                "testRecycledFileOverflow", configuration, executorService);
+
+        // 9 records fit into a journal file
+        @SuppressWarnings("unchecked") JournalEntry<byte[]>[] records = new JournalEntry[50];
+        for (int i = 0; i < 30; i++) {
+            records[i] = buildTestRecord((byte) i);
+            journal.appendEntry(records[i].getValue(), records[i].getType());
+        }
+
+        // The first three journal files are covered, only two of them fit into the pool
+        journal.checkpoint(27);
+        File recycled = new File(path, DiskJournalSegmentPool.RECYCLE_DIRECTORY);
+        Set<Object> recycledFiles = fileKeys(recycled.listFiles());
+        assertEquals(2, recycledFiles.size());
+
+        // Recycled files are zeroed in the background before they are handed out again
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (journal.getSegmentPool().getAvailableSegments() < 2) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+
+        // Two rollovers reuse both recycled files
+        for (int i = 30; i < records.length; i++) {
+            records[i] = buildTestRecord((byte) i);
+            journal.appendEntry(records[i].getValue(), records[i].getType());
+        }
+        assertEquals(0, recycled.listFiles().length);
+        assertTrue(fileKeys(path.listFiles(File::isFile)).containsAll(recycledFiles));
+
+        journal.close();
+        executorService.shutdown();
+
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        Journal<byte[]> replayed = journalSystem.getJournal("testRecycledFileOverflow", configuration);
+
+        assertEquals(records.length - 27, listener.count);
+        for (int i = 0; i < listener.count; i++) {
+            assertEquals(records[i + 27], listener.get(i));
+        }
+
+        replayed.close();
+    }
+
+    @Test
+    public void testUnusedPreallocatedFilesRecycled()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testUnusedPreallocatedFilesRecycled");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = (DiskJournalConfiguration<byte[]>) buildDiskJournalConfiguration(
+                path.toPath(), 4096, new RecordReader(), new RecordWriter(), new FlushListener(), new NamingStrategy(),
+                new RecordIdGenerator());
+
+        configuration.setPreallocatedJournalFiles(2);
+        configuration.setMaxRecycledJournalFiles(4);
+
+        Journal<byte[]> journal = journalSystem.getJournal("testUnusedPreallocatedFilesRecycled", configuration);
+
+        File preallocated = new File(path, DiskJournalSegmentAllocator.PREALLOCATION_DIRECTORY);
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (preallocated.listFiles().length < 2) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        Set<Object> preallocatedFiles = fileKeys(preallocated.listFiles());
+
+        journal.close();
+
+        // Never used journal files are moved into the pool
+        File recycled = new File(path, DiskJournalSegmentPool.RECYCLE_DIRECTORY);
+        assertEquals(0, preallocated.listFiles().length);
+        assertEquals(preallocatedFiles, fileKeys(recycled.listFiles()));
+    }
+
+    @Test
+    public void testTerminatedReplay()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testTerminatedReplay");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        JournalConfiguration<byte[]> configuration = buildDiskJournalConfiguration(path.toPath(), 4096, new RecordReader(),
+                new RecordWriter(), new FlushListener(), new NamingStrategy(), new RecordIdGenerator());
+
+        Journal<byte[]> journal = journalSystem.getJournal("testTerminatedReplay", configuration);
+
+        @SuppressWarnings("unchecked") JournalEntry<byte[]>[] records = new JournalEntry[50];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = buildTestRecord((byte) i);
+            journal.appendEntry(records[i].getValue(), records[i].getType());
+        }
+
+        journal.close();
+
+        // Records are streamed, terminating stops reading the following journal files
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except) {
+
+            @Override
+            public ReplayNotificationResult onReplayRecordId(Journal<byte[]> journal, JournalRecord<byte[]> record) {
+                super.onReplayRecordId(journal, record);
+                return record.getRecordId() == 25 ? ReplayNotificationResult.Terminate : ReplayNotificationResult.Continue;
+            }
+        };
+        configuration.setListener(listener);
+        configuration.setRecordIdGenerator(new RecordIdGenerator());
+        journal = journalSystem.getJournal("testTerminatedReplay", configuration);
+
+        assertEquals(25, listener.count);
+        assertEquals(25, journal.getLastRecordId());
+
+        for (int i = 0; i < listener.count; i++) {
+            assertEquals(records[i], listener.get(i));
+        }
+
+        journal.close();
+    }
+
+    @Test
+    public void testParallelReplay()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testParallelReplay");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = (DiskJournalConfiguration<byte[]>) buildDiskJournalConfiguration(
+                path.toPath(), 4096, new RecordReader(), new RecordWriter(), new FlushListener(), new NamingStrategy(),
+                new RecordIdGenerator());
+
+        Journal<byte[]> journal = journalSystem.getJournal("testParallelReplay", configuration);
+
+        @SuppressWarnings("unchecked") JournalEntry<byte[]>[] records = new JournalEntry[300];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = buildTestRecord((byte) i);
+            journal.appendEntry(records[i].getValue(), records[i].getType());
+        }
+
+        journal.close();
+
+        // Far more journal files than replay threads
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        configuration.setReplayThreads(3);
+        journal = journalSystem.getJournal("testParallelReplay", configuration);
+
+        assertEquals(records.length, listener.count);
+
+        for (int i = 0; i < records.length; i++) {
+            assertEquals(i + 1, listener.getRecordId(i));
+            assertEquals(records[i], listener.get(i));
+        }
+
+        journal.close();
+    }
+
     @Test
     public void testFullFileOverflow()
             throws Exception {
@@ -135,8 +420,8 @@ public class OverflowTestCase
 
         @SuppressWarnings("unchecked") JournalEntry<byte[]>[] records = new JournalEntry[5];
         for (int i = 0; i < records.length; i++) {
-            // Generate special overflow entry on index == 2
-            records[i] = buildTestRecord(i == 2 ? 1024 : 400, (byte) i);
+            // Generate special overflow entry on index == 2, spanning multiple journal files
+            records[i] = buildTestRecord(i == 2 ? 2500 : 400, (byte) i);
         }
 
         journal.appendEntry(records[0].getValue(), records[0].getType());
@@ -147,15 +432,16 @@ public class OverflowTestCase
 
         journal.close();
 
-        // 3 journal files needs to be generated
-        File[] files = path.listFiles();
-        assertEquals(3, files.length);
-
-        // "journal-2" needs to be overflow file
-        RandomAccessFile raf = new RandomAccessFile(new File(path, "journal-2"), "r");
-        DiskJournalFileHeader header = DiskJournalIOUtils.readHeader(raf);
-        assertEquals(DiskJournal.JOURNAL_FILE_TYPE_OVERFLOW, header.getType());
-        raf.close();
+        // The large entry is split into fragments over regular journal files, no overflow file is generated
+        File[] files = path.listFiles(File::isFile);
+        assertEquals(5, files.length);
+        for (File file : files) {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            DiskJournalFileHeader header = DiskJournalIOUtils.readHeader(raf);
+            assertEquals(DiskJournal.JOURNAL_FILE_TYPE_DEFAULT, header.getType());
+            assertEquals(1024, header.getMaxLogFileSize());
+            raf.close();
+        }
 
         CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
         configuration.setListener(listener);
@@ -169,6 +455,66 @@ public class OverflowTestCase
         }
     }
 
+    @Test
+    public void testRecordsLargerThanGatheringWrite()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testRecordsLargerThanGatheringWrite");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        JournalConfiguration<byte[]> configuration = buildDiskJournalConfiguration(path.toPath(), 8 * 1024 * 1024,
+                new RecordReader(), new RecordWriter(), new FlushListener(), new NamingStrategy(), new RecordIdGenerator());
+
+        Journal<byte[]> journal = journalSystem.getJournal("testRecordsLargerThanGatheringWrite", configuration);
+
+        // Records and batches exceeding the pooled buffers of a single gathering write are streamed in chunks
+        List<JournalEntry<byte[]>> records = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            JournalEntry<byte[]> record = buildTestRecord(2 * 1024 * 1024 + i, (byte) i);
+            journal.appendEntry(record.getValue(), record.getType());
+            records.add(record);
+        }
+
+        JournalBatch<byte[]> batch = journal.startBatchProcess();
+        for (int i = 0; i < 3; i++) {
+            JournalEntry<byte[]> record = buildTestRecord(700 * 1024, (byte) i);
+            batch.appendEntry(record.getValue(), record.getType());
+            records.add(record);
+        }
+        batch.commit();
+
+        journal.close();
+
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        journal = journalSystem.getJournal("testRecordsLargerThanGatheringWrite", configuration);
+
+        assertEquals(records.size(), listener.count);
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(records.get(i), listener.get(i));
+        }
+
+        journal.close();
+    }
+
+    private Set<Object> fileKeys(File[] files)
+            throws IOException {
+
+        Set<Object> fileKeys = new HashSet<>();
+        for (File file : files) {
+            fileKeys.add(Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey());
+        }
+        return fileKeys;
+    }
+
+    private long readLogNumber(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return DiskJournalIOUtils.readHeader(raf).getLogNumber();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private SimpleJournalEntry<byte[]> buildTestRecord(byte type) {
         return buildTestRecord(400, type);
     }
@@ -302,6 +648,10 @@ public class OverflowTestCase
         public JournalEntry<byte[]> get(int index) {
             return records.get(index).getJournalEntry();
         }
+
+        public long getRecordId(int index) {
+            return records.get(index).getRecordId();
+        }
     }
 
 }
@@ -0,0 +1,156 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.Journal;
+import com.noctarius.replikate.JournalBatch;
+import com.noctarius.replikate.JournalRecord;
+import com.noctarius.replikate.JournalSystem;
+import com.noctarius.replikate.SimpleJournalEntry;
+import com.noctarius.replikate.impl.disk.BasicDiskJournalTestCase.NamingStrategy;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.CountingFlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.FlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordIdGenerator;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordReader;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordWriter;
+import com.noctarius.replikate.spi.JournalEntry;
+import com.noctarius.replikate.spi.ReplayNotificationResult;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ReadRecordTestCase
+        extends AbstractJournalTestCase {
+
+    @Test
+    public void testReadRecord()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testReadRecord");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildReadConfiguration(path);
+        Journal<byte[]> journal = journalSystem.getJournal("testReadRecord", configuration);
+
+        List<JournalEntry<byte[]>> records = appendRecords(journal);
+        assertRecords(journal, records);
+
+        journal.close();
+
+        // Journal files read by the replay are sealed and positioned using their indexes
+        configuration.setListener(new CountingFlushListener(ReplayNotificationResult.Continue));
+        journal = journalSystem.getJournal("testReadRecord", configuration);
+        assertRecords(journal, records);
+
+        journal.close();
+    }
+
+    @Test
+    public void testReadRange()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testReadRange");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildReadConfiguration(path);
+        Journal<byte[]> journal = journalSystem.getJournal("testReadRange", configuration);
+
+        List<JournalEntry<byte[]>> records = appendRecords(journal);
+
+        // The range spans multiple journal files, a batch and the fragmented record
+        List<JournalRecord<byte[]>> range = journal.readRange(20, 80);
+        assertEquals(61, range.size());
+        for (int i = 0; i < range.size(); i++) {
+            assertEquals(20 + i, range.get(i).getRecordId());
+            assertEquals(records.get(19 + i), range.get(i).getJournalEntry());
+        }
+
+        // Ranges are clipped to the existing records
+        assertEquals(records.size(), journal.readRange(0, Long.MAX_VALUE).size());
+        assertEquals(0, journal.readRange(records.size() + 1, records.size() + 10).size());
+
+        // Journal files covered by the checkpoint are gone, the others are still readable
+        journal.checkpoint(60);
+        range = journal.readRange(0, records.size());
+        assertEquals(records.get(records.size() - 1), range.get(range.size() - 1).getJournalEntry());
+        for (JournalRecord<byte[]> record : range) {
+            assertEquals(records.get((int) record.getRecordId() - 1), record.getJournalEntry());
+        }
+
+        journal.close();
+    }
+
+    private void assertRecords(Journal<byte[]> journal, List<JournalEntry<byte[]>> records)
+            throws Exception {
+
+        for (int i = 0; i < records.size(); i++) {
+            JournalRecord<byte[]> record = journal.readRecord(i + 1);
+            assertEquals(i + 1, record.getRecordId());
+            assertEquals(records.get(i), record.getJournalEntry());
+        }
+        assertNull(journal.readRecord(0));
+        assertNull(journal.readRecord(records.size() + 1));
+    }
+
+    private List<JournalEntry<byte[]>> appendRecords(Journal<byte[]> journal)
+            throws Exception {
+
+        List<JournalEntry<byte[]>> records = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            if (i == 30) {
+                JournalBatch<byte[]> batch = journal.startBatchProcess();
+                for (int j = 0; j < 5; j++) {
+                    JournalEntry<byte[]> record = buildTestRecord(100, (byte) j);
+                    batch.appendEntry(record.getValue(), record.getType());
+                    records.add(record);
+                }
+                batch.commit();
+            }
+
+            // A single record larger than a journal file is split into fragments
+            JournalEntry<byte[]> record = buildTestRecord(i == 50 ? 10000 : 100, (byte) i);
+            journal.appendEntry(record.getValue(), record.getType());
+            records.add(record);
+        }
+        return records;
+    }
+
+    private DiskJournalConfiguration<byte[]> buildReadConfiguration(File path) {
+        DiskJournalConfiguration<byte[]> configuration = (DiskJournalConfiguration<byte[]>) buildDiskJournalConfiguration(
+                path.toPath(), 4096, new RecordReader(), new RecordWriter(), new FlushListener(), new NamingStrategy(),
+                new RecordIdGenerator());
+
+        configuration.setRecordIndexInterval(8);
+        return configuration;
+    }
+
+    private SimpleJournalEntry<byte[]> buildTestRecord(int dataLength, byte type) {
+        Random random = new Random(-System.nanoTime());
+        byte[] data = new byte[dataLength];
+        random.nextBytes(data);
+        return new SimpleJournalEntry<>(data, type);
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.Journal;
+import com.noctarius.replikate.JournalBatch;
+import com.noctarius.replikate.JournalSystem;
+import com.noctarius.replikate.SimpleJournalEntry;
+import com.noctarius.replikate.impl.disk.BasicDiskJournalTestCase.NamingStrategy;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.CountingFlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.FlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordIdGenerator;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordReader;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordWriter;
+import com.noctarius.replikate.spi.JournalEntry;
+import com.noctarius.replikate.spi.ReplayNotificationResult;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentIndexTestCase
+        extends AbstractJournalTestCase {
+
+    @Test
+    public void testSeekUsingIndex()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testSeekUsingIndex");
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        DiskJournalConfiguration<byte[]> configuration = buildIndexConfiguration(path);
+        DiskJournal<byte[]> journal = (DiskJournal<byte[]>) new DiskJournalFactory<byte[]>().buildJournal(
+                "testSeekUsingIndex", configuration, executorService);
+
+        List<JournalEntry<byte[]>> records = appendRecords(journal);
+        journal.close();
+
+        File[] journalFiles = path.listFiles((dir, fileName) -> new NamingStrategy().isJournal(fileName));
+        assertTrue(journalFiles.length > 1);
+
+        long lastRecordId = -1;
+        for (File journalFile : journalFiles) {
+            long logNumber = new NamingStrategy().extractLogNumber(journalFile.getName());
+            DiskJournalSegmentIndex index = DiskJournalIOUtils.readIndex(journal.resolveIndexFile(logNumber), logNumber);
+            assertNotNull(index);
+            assertTrue(index.size() > 0);
+
+            for (long seekRecordId = index.getFirstRecordId(); seekRecordId <= index.getLastRecordId(); seekRecordId++) {
+                try (DiskJournalSegmentCursor<byte[]> cursor = new DiskJournalSegmentCursor<>(journal, journalFile)) {
+                    assertTrue(cursor.isIndexed());
+                    cursor.seek(seekRecordId);
+
+                    DiskJournalRecord<byte[]> record = cursor.next();
+                    assertEquals(seekRecordId, record.getRecordId());
+                    assertEquals(records.get((int) seekRecordId - 1), record.getJournalEntry());
+                }
+            }
+            lastRecordId = Math.max(lastRecordId, index.getLastRecordId());
+
+            // Seeking behind the journal file's records ends the cursor
+            try (DiskJournalSegmentCursor<byte[]> cursor = new DiskJournalSegmentCursor<>(journal, journalFile)) {
+                cursor.seek(index.getLastRecordId() + 1);
+                assertFalse(cursor.hasNext());
+            }
+        }
+        assertEquals(records.size(), lastRecordId);
+
+        executorService.shutdown();
+    }
+
+    @Test
+    public void testIndexRebuiltOnReplay()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testIndexRebuiltOnReplay");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = buildIndexConfiguration(path);
+        Journal<byte[]> journal = journalSystem.getJournal("testIndexRebuiltOnReplay", configuration);
+
+        List<JournalEntry<byte[]>> records = appendRecords(journal);
+        journal.checkpoint(100);
+        journal.close();
+
+        // One index is missing, another one is broken
+        Path indexDirectory = path.toPath().resolve(DiskJournalSegmentIndex.INDEX_DIRECTORY);
+        File[] indexFiles = indexDirectory.toFile().listFiles();
+        assertTrue(indexFiles.length > 2);
+        Files.delete(indexFiles[0].toPath());
+        try (RandomAccessFile raf = new RandomAccessFile(indexFiles[1], "rw")) {
+            raf.seek(raf.length() - 1);
+            int checksumByte = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(checksumByte + 1);
+        }
+
+        for (int run = 0; run < 2; run++) {
+            CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Continue);
+            configuration.setListener(listener);
+            journal = journalSystem.getJournal("testIndexRebuiltOnReplay", configuration);
+
+            assertEquals(records.size() - 100, listener.getCount());
+            for (int i = 0; i < listener.getCount(); i++) {
+                assertEquals(101 + i, listener.getRecordId(i));
+                assertEquals(records.get(100 + i), listener.get(i));
+            }
+            journal.close();
+
+            // Every remaining journal file is indexed again
+            File[] journalFiles = path.listFiles((dir, fileName) -> new NamingStrategy().isJournal(fileName));
+            for (File journalFile : journalFiles) {
+                long logNumber = new NamingStrategy().extractLogNumber(journalFile.getName());
+                Path indexFile = indexDirectory.resolve(new NamingStrategy().generate(logNumber));
+                assertNotNull(DiskJournalIOUtils.readIndex(indexFile, logNumber));
+            }
+        }
+    }
+
+    private List<JournalEntry<byte[]>> appendRecords(Journal<byte[]> journal)
+            throws Exception {
+
+        List<JournalEntry<byte[]>> records = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            // Every 25th record starts a small batch, indexed framings must never point into a batch
+            if (i % 25 == 0) {
+                JournalBatch<byte[]> batch = journal.startBatchProcess();
+                for (int j = 0; j < 5; j++) {
+                    JournalEntry<byte[]> record = buildTestRecord((byte) (i + j));
+                    batch.appendEntry(record.getValue(), record.getType());
+                    records.add(record);
+                }
+                batch.commit();
+                i += 4;
+                continue;
+            }
+
+            JournalEntry<byte[]> record = buildTestRecord((byte) i);
+            journal.appendEntry(record.getValue(), record.getType());
+            records.add(record);
+        }
+        return records;
+    }
+
+    private DiskJournalConfiguration<byte[]> buildIndexConfiguration(File path) {
+        DiskJournalConfiguration<byte[]> configuration = (DiskJournalConfiguration<byte[]>) buildDiskJournalConfiguration(
+                path.toPath(), 4096, new RecordReader(), new RecordWriter(), new FlushListener(), new NamingStrategy(),
+                new RecordIdGenerator());
+
+        configuration.setRecordIndexInterval(8);
+        return configuration;
+    }
+
+    private SimpleJournalEntry<byte[]> buildTestRecord(byte type) {
+        Random random = new Random(-System.nanoTime());
+        byte[] data = new byte[100];
+        random.nextBytes(data);
+        return new SimpleJournalEntry<>(data, type);
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package com.noctarius.replikate.impl.disk;
+
+import com.noctarius.replikate.Journal;
+import com.noctarius.replikate.JournalBatch;
+import com.noctarius.replikate.JournalSystem;
+import com.noctarius.replikate.SimpleJournalEntry;
+import com.noctarius.replikate.impl.disk.BasicDiskJournalTestCase.NamingStrategy;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.CountingFlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.FlushListener;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordIdGenerator;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordReader;
+import com.noctarius.replikate.impl.disk.OverflowTestCase.RecordWriter;
+import com.noctarius.replikate.spi.JournalEntry;
+import com.noctarius.replikate.spi.ReplayNotificationResult;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class SyncModeTestCase
+        extends AbstractJournalTestCase {
+
+    @Test
+    public void testSyncMetadata()
+            throws Exception {
+
+        appendAndReplay("testSyncMetadata", DiskJournalSyncMode.SyncMetadata);
+    }
+
+    @Test
+    public void testSyncData()
+            throws Exception {
+
+        appendAndReplay("testSyncData", DiskJournalSyncMode.SyncData);
+    }
+
+    @Test
+    public void testSyncBytes()
+            throws Exception {
+
+        appendAndReplay("testSyncBytes", DiskJournalSyncMode.SyncBytes);
+    }
+
+    @Test
+    public void testSyncInterval()
+            throws Exception {
+
+        appendAndReplay("testSyncInterval", DiskJournalSyncMode.SyncInterval);
+    }
+
+    @Test
+    public void testBuffered()
+            throws Exception {
+
+        appendAndReplay("testBuffered", DiskJournalSyncMode.Buffered);
+    }
+
+    @Test
+    public void testSyncDataBatchLargerThanGatheringWrite()
+            throws Exception {
+
+        File path = prepareJournalDirectory("testSyncDataBatchLargerThanGatheringWrite");
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = (DiskJournalConfiguration<byte[]>) buildDiskJournalConfiguration(
+                path.toPath(), 8 * 1024 * 1024, new RecordReader(), new RecordWriter(), new FlushListener(),
+                new NamingStrategy(), new RecordIdGenerator());
+        configuration.setSyncMode(DiskJournalSyncMode.SyncData);
+
+        Journal<byte[]> journal = journalSystem.getJournal("testSyncDataBatchLargerThanGatheringWrite", configuration);
+
+        // Writes are synced by the channel itself, the batch is not streamed but written by a single gathering write
+        @SuppressWarnings("unchecked") JournalEntry<byte[]>[] records = new JournalEntry[3];
+        JournalBatch<byte[]> batch = journal.startBatchProcess();
+        for (int i = 0; i < records.length; i++) {
+            records[i] = buildTestRecord(700 * 1024, (byte) i);
+            batch.appendEntry(records[i].getValue(), records[i].getType());
+        }
+        batch.commit();
+
+        journal.close();
+
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        journal = journalSystem.getJournal("testSyncDataBatchLargerThanGatheringWrite", configuration);
+
+        assertEquals(records.length, listener.getCount());
+        for (int i = 0; i < records.length; i++) {
+            assertEquals(records[i], listener.get(i));
+        }
+
+        journal.close();
+    }
+
+    private void appendAndReplay(String name, DiskJournalSyncMode syncMode)
+            throws Exception {
+
+        File path = prepareJournalDirectory(name);
+
+        JournalSystem journalSystem = JournalSystem.newJournalSystem();
+        DiskJournalConfiguration<byte[]> configuration = (DiskJournalConfiguration<byte[]>) buildDiskJournalConfiguration(
+                path.toPath(), 4096, new RecordReader(), new RecordWriter(), new FlushListener(), new NamingStrategy(),
+                new RecordIdGenerator());
+
+        configuration.setSyncMode(syncMode);
+        configuration.setSyncBytes(1024);
+        configuration.setSyncIntervalMillis(5);
+
+        Journal<byte[]> journal = journalSystem.getJournal(name, configuration);
+
+        @SuppressWarnings("unchecked") JournalEntry<byte[]>[] records = new JournalEntry[30];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = buildTestRecord((byte) i);
+            journal.appendEntry(records[i].getValue(), records[i].getType());
+        }
+
+        journal.close();
+
+        CountingFlushListener listener = new CountingFlushListener(ReplayNotificationResult.Except);
+        configuration.setListener(listener);
+        journal = journalSystem.getJournal(name, configuration);
+
+        assertEquals(records.length, listener.getCount());
+        for (int i = 0; i < records.length; i++) {
+            assertEquals(records[i], listener.get(i));
+        }
+
+        journal.close();
+    }
+
+    private SimpleJournalEntry<byte[]> buildTestRecord(byte type) {
+        return buildTestRecord(200, type);
+    }
+
+    private SimpleJournalEntry<byte[]> buildTestRecord(int dataLength, byte type) {
+        Random random = new Random(-System.nanoTime());
+        byte[] data = new byte[dataLength];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) random.nextInt(255);
+        }
+        return new SimpleJournalEntry<>(data, type);
+    }
+
+}